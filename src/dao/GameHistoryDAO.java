@@ -6,7 +6,8 @@ import java.sql.Connection;
 import java.sql.PreparedStatement;
 import java.sql.ResultSet;
 import java.sql.SQLException;
-import java.sql.Timestamp;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
 
 /**
  * DAO for managing game history and scores
@@ -14,256 +15,147 @@ import java.sql.Timestamp;
 public class GameHistoryDAO {
     
     /**
-     * Save PvP game result to database
+     * Save PvP game result to database. Queued, written with the next write-behind flush.
      * @param username player name
      * @param goldEarned gold earned
      * @param kills number of monsters killed
      * @param pointsEarned points added to leaderboard
-     * @return true if successful
+     * @return true if queued
      */
     public boolean savePvpGameResult(String username, int goldEarned, int kills, int pointsEarned) {
-        Connection conn = DatabaseConnection.getConnection();
-        if (conn == null) return false;
-        
-        try {
-            // Create table if not exists
-            createGameHistoryTableIfNotExists(conn);
-            
-            String query = "INSERT INTO game_history (username, game_mode, score, kills, points_earned, played_at) " +
-                          "VALUES (?, 'pvp', ?, ?, ?, NOW())";
-            PreparedStatement stmt = conn.prepareStatement(query);
-            stmt.setString(1, username);
-            stmt.setInt(2, goldEarned);
-            stmt.setInt(3, kills);
-            stmt.setInt(4, pointsEarned);
-            
-            int rows = stmt.executeUpdate();
-            stmt.close();
-            
-            // Update PvP stats
-            updatePvpStats(conn, username, goldEarned, kills);
-            
-            return rows > 0;
-        } catch (SQLException e) {
-            e.printStackTrace();
-            return false;
-        } finally {
-            try { conn.close(); } catch (SQLException e) { e.printStackTrace(); }
-        }
+        WriteBehindQueue.get().recordGame(new WriteBehindQueue.GameRecord(username, "pvp", goldEarned, kills, 0, false, pointsEarned));
+        return true;
     }
     
     /**
-     * Save Maze game result to database
+     * Save Maze game result to database. Queued, written with the next write-behind flush.
      * @param username player name
      * @param score score
      * @param coinsCollected coins collected
      * @param won whether player won
      * @param pointsEarned points added to leaderboard
-     * @return true if successful
+     * @return true if queued
      */
     public boolean saveMazeGameResult(String username, int score, int coinsCollected, boolean won, int pointsEarned) {
-        Connection conn = DatabaseConnection.getConnection();
-        if (conn == null) return false;
-        
-        try {
-            // Create table if not exists
-            createGameHistoryTableIfNotExists(conn);
-            
-            String query = "INSERT INTO game_history (username, game_mode, score, coins_collected, won, points_earned, played_at) " +
-                          "VALUES (?, 'maze', ?, ?, ?, ?, NOW())";
-            PreparedStatement stmt = conn.prepareStatement(query);
-            stmt.setString(1, username);
-            stmt.setInt(2, score);
-            stmt.setInt(3, coinsCollected);
-            stmt.setBoolean(4, won);
-            stmt.setInt(5, pointsEarned);
-            
-            int rows = stmt.executeUpdate();
-            stmt.close();
-            
-            // Update Maze stats
-            updateMazeStats(conn, username, score, coinsCollected, won);
-            
-            return rows > 0;
-        } catch (SQLException e) {
-            e.printStackTrace();
-            return false;
-        } finally {
-            try { conn.close(); } catch (SQLException e) { e.printStackTrace(); }
-        }
+        WriteBehindQueue.get().recordGame(new WriteBehindQueue.GameRecord(username, "maze", score, 0, coinsCollected, won, pointsEarned));
+        return true;
     }
 
     /**
-     * Save Monster Hunt game result to database
+     * Save Monster Hunt game result to database. Queued, written with the next write-behind flush.
      * @param username player name
      * @param score score obtained
      * @param pointsEarned points added to leaderboard
-     * @return true if successful
+     * @return true if queued
      */
     public boolean saveHuntGameResult(String username, int score, int pointsEarned) {
-        Connection conn = DatabaseConnection.getConnection();
-        if (conn == null) return false;
-        
-        try {
-            // Create table if not exists
-            createGameHistoryTableIfNotExists(conn);
-            
-            String query = "INSERT INTO game_history (username, game_mode, score, coins_collected, points_earned, played_at) " +
-                          "VALUES (?, 'hunt', ?, ?, ?, NOW())";
-            PreparedStatement stmt = conn.prepareStatement(query);
-            stmt.setString(1, username);
-            stmt.setInt(2, score);
-            stmt.setInt(3, score); // In hunt, score = coins
-            stmt.setInt(4, pointsEarned);
-            
-            int rows = stmt.executeUpdate();
-            stmt.close();
-            
-            // For now, we don't have specific hunt stats table, but we count it towards total coins
-            // We could add updateHuntStats later if needed
-            
-            return rows > 0;
-        } catch (SQLException e) {
-            e.printStackTrace();
-            return false;
-        } finally {
-            try { conn.close(); } catch (SQLException e) { e.printStackTrace(); }
-        }
+        // In hunt, score = coins
+        WriteBehindQueue.get().recordGame(new WriteBehindQueue.GameRecord(username, "hunt", score, 0, score, false, pointsEarned));
+        return true;
     }
     
-    /**
-     * Create game_history table if not exists
-     */
-    private void createGameHistoryTableIfNotExists(Connection conn) throws SQLException {
-        String createTableQuery = 
-            "CREATE TABLE IF NOT EXISTS game_history (" +
-            "  id INT AUTO_INCREMENT PRIMARY KEY," +
-            "  username VARCHAR(50) NOT NULL," +
-            "  game_mode VARCHAR(20) NOT NULL," +
-            "  score INT DEFAULT 0," +
-            "  kills INT DEFAULT 0," +
-            "  coins_collected INT DEFAULT 0," +
-            "  won BOOLEAN DEFAULT FALSE," +
-            "  points_earned INT DEFAULT 0," +
-            "  played_at TIMESTAMP DEFAULT CURRENT_TIMESTAMP," +
-            "  INDEX idx_username (username)," +
-            "  INDEX idx_game_mode (game_mode)" +
-            ")";
-        PreparedStatement stmt = conn.prepareStatement(createTableQuery);
-        stmt.executeUpdate();
-        stmt.close();
-        
-        // Create player_stats table if not exists
-        String createStatsQuery = 
-            "CREATE TABLE IF NOT EXISTS player_stats (" +
-            "  username VARCHAR(50) PRIMARY KEY," +
-            "  total_pvp_games INT DEFAULT 0," +
-            "  total_pvp_gold INT DEFAULT 0," +
-            "  total_pvp_kills INT DEFAULT 0," +
-            "  highest_pvp_gold INT DEFAULT 0," +
-            "  total_maze_games INT DEFAULT 0," +
-            "  total_maze_wins INT DEFAULT 0," +
-            "  total_maze_score INT DEFAULT 0," +
-            "  highest_maze_score INT DEFAULT 0," +
-            "  total_coins_collected INT DEFAULT 0," +
-            "  last_played TIMESTAMP DEFAULT CURRENT_TIMESTAMP ON UPDATE CURRENT_TIMESTAMP" +
-            ")";
-        stmt = conn.prepareStatement(createStatsQuery);
-        stmt.executeUpdate();
-        stmt.close();
+    // ============ Async variants (run on the DatabaseExecutor) ============
+    
+    // Saves only queue the result, so these complete immediately
+    
+    public CompletableFuture<Boolean> savePvpGameResultAsync(String username, int goldEarned, int kills, int pointsEarned) {
+        return CompletableFuture.completedFuture(savePvpGameResult(username, goldEarned, kills, pointsEarned));
     }
     
-    /**
-     * Update PvP stats for player
-     */
-    private void updatePvpStats(Connection conn, String username, int goldEarned, int kills) throws SQLException {
-        // Kiểm tra xem đã có record chưa
-        String checkQuery = "SELECT * FROM player_stats WHERE username = ?";
-        PreparedStatement checkStmt = conn.prepareStatement(checkQuery);
-        checkStmt.setString(1, username);
-        ResultSet rs = checkStmt.executeQuery();
-        
-        if (rs.next()) {
-            // Update existing record
-            int currentHighest = rs.getInt("highest_pvp_gold");
-            int newHighest = Math.max(currentHighest, goldEarned);
-            
-            String updateQuery = "UPDATE player_stats SET " +
-                "total_pvp_games = total_pvp_games + 1, " +
-                "total_pvp_gold = total_pvp_gold + ?, " +
-                "total_pvp_kills = total_pvp_kills + ?, " +
-                "highest_pvp_gold = ? " +
-                "WHERE username = ?";
-            PreparedStatement updateStmt = conn.prepareStatement(updateQuery);
-            updateStmt.setInt(1, goldEarned);
-            updateStmt.setInt(2, kills);
-            updateStmt.setInt(3, newHighest);
-            updateStmt.setString(4, username);
-            updateStmt.executeUpdate();
-            updateStmt.close();
-        } else {
-            // Insert new record
-            String insertQuery = "INSERT INTO player_stats (username, total_pvp_games, total_pvp_gold, total_pvp_kills, highest_pvp_gold) " +
-                "VALUES (?, 1, ?, ?, ?)";
-            PreparedStatement insertStmt = conn.prepareStatement(insertQuery);
-            insertStmt.setString(1, username);
-            insertStmt.setInt(2, goldEarned);
-            insertStmt.setInt(3, kills);
-            insertStmt.setInt(4, goldEarned);
-            insertStmt.executeUpdate();
-            insertStmt.close();
-        }
-        
-        rs.close();
-        checkStmt.close();
+    public CompletableFuture<Boolean> saveMazeGameResultAsync(String username, int score, int coinsCollected, boolean won, int pointsEarned) {
+        return CompletableFuture.completedFuture(saveMazeGameResult(username, score, coinsCollected, won, pointsEarned));
     }
     
+    public CompletableFuture<Boolean> saveHuntGameResultAsync(String username, int score, int pointsEarned) {
+        return CompletableFuture.completedFuture(saveHuntGameResult(username, score, pointsEarned));
+    }
+    
+    private static final String PVP_STATS_UPSERT =
+        "INSERT INTO player_stats (username, total_pvp_games, total_pvp_gold, total_pvp_kills, highest_pvp_gold) " +
+        "VALUES (?, 1, ?, ?, ?) " +
+        "ON DUPLICATE KEY UPDATE " +
+        "total_pvp_games = total_pvp_games + 1, " +
+        "total_pvp_gold = total_pvp_gold + ?, " +
+        "total_pvp_kills = total_pvp_kills + ?, " +
+        "highest_pvp_gold = GREATEST(highest_pvp_gold, ?)";
+    
+    private static final String MAZE_STATS_UPSERT =
+        "INSERT INTO player_stats (username, total_maze_games, total_maze_wins, total_maze_score, highest_maze_score, total_coins_collected) " +
+        "VALUES (?, 1, ?, ?, ?, ?) " +
+        "ON DUPLICATE KEY UPDATE " +
+        "total_maze_games = total_maze_games + 1, " +
+        "total_maze_wins = total_maze_wins + ?, " +
+        "total_maze_score = total_maze_score + ?, " +
+        "highest_maze_score = GREATEST(highest_maze_score, ?), " +
+        "total_coins_collected = total_coins_collected + ?";
+    
+    private static final String HUNT_STATS_UPSERT =
+        "INSERT INTO player_stats (username, total_hunt_games, total_hunt_score, highest_hunt_score, total_coins_collected) " +
+        "VALUES (?, 1, ?, ?, ?) " +
+        "ON DUPLICATE KEY UPDATE " +
+        "total_hunt_games = total_hunt_games + 1, " +
+        "total_hunt_score = total_hunt_score + ?, " +
+        "highest_hunt_score = GREATEST(highest_hunt_score, ?), " +
+        "total_coins_collected = total_coins_collected + ?";
+    
     /**
-     * Update Maze stats for player
+     * Update player_stats for many game results in the caller's transaction.
+     * Each result is one upsert, so a missing row is created and an existing one is
+     * incremented in a single statement; the upserts are sent as one batch per game mode.
      */
-    private void updateMazeStats(Connection conn, String username, int score, int coinsCollected, boolean won) throws SQLException {
-        // Check if record already exists
-        String checkQuery = "SELECT * FROM player_stats WHERE username = ?";
-        PreparedStatement checkStmt = conn.prepareStatement(checkQuery);
-        checkStmt.setString(1, username);
-        ResultSet rs = checkStmt.executeQuery();
-        
-        if (rs.next()) {
-            // Update existing record
-            int currentHighest = rs.getInt("highest_maze_score");
-            int newHighest = Math.max(currentHighest, score);
+    void updateStats(Connection conn, List<WriteBehindQueue.GameRecord> games) throws SQLException {
+        try (PreparedStatement pvp = conn.prepareStatement(PVP_STATS_UPSERT);
+             PreparedStatement maze = conn.prepareStatement(MAZE_STATS_UPSERT);
+             PreparedStatement hunt = conn.prepareStatement(HUNT_STATS_UPSERT)) {
+            int pvpCount = 0, mazeCount = 0, huntCount = 0;
+            
+            for (WriteBehindQueue.GameRecord game : games) {
+                switch (game.gameMode) {
+                    case "pvp":
+                        pvp.setString(1, game.username);
+                        pvp.setInt(2, game.score);
+                        pvp.setInt(3, game.kills);
+                        pvp.setInt(4, game.score);
+                        pvp.setInt(5, game.score);
+                        pvp.setInt(6, game.kills);
+                        pvp.setInt(7, game.score);
+                        pvp.addBatch();
+                        pvpCount++;
+                        break;
+                    case "maze":
+                        int wins = game.won ? 1 : 0;
+                        maze.setString(1, game.username);
+                        maze.setInt(2, wins);
+                        maze.setInt(3, game.score);
+                        maze.setInt(4, game.score);
+                        maze.setInt(5, game.coinsCollected);
+                        maze.setInt(6, wins);
+                        maze.setInt(7, game.score);
+                        maze.setInt(8, game.score);
+                        maze.setInt(9, game.coinsCollected);
+                        maze.addBatch();
+                        mazeCount++;
+                        break;
+                    case "hunt":
+                        hunt.setString(1, game.username);
+                        hunt.setInt(2, game.score);
+                        hunt.setInt(3, game.score);
+                        hunt.setInt(4, game.coinsCollected);
+                        hunt.setInt(5, game.score);
+                        hunt.setInt(6, game.score);
+                        hunt.setInt(7, game.coinsCollected);
+                        hunt.addBatch();
+                        huntCount++;
+                        break;
+                    default:
+                        break;
+                }
+            }
             
-            String updateQuery = "UPDATE player_stats SET " +
-                "total_maze_games = total_maze_games + 1, " +
-                "total_maze_wins = total_maze_wins + ?, " +
-                "total_maze_score = total_maze_score + ?, " +
-                "highest_maze_score = ?, " +
-                "total_coins_collected = total_coins_collected + ? " +
-                "WHERE username = ?";
-            PreparedStatement updateStmt = conn.prepareStatement(updateQuery);
-            updateStmt.setInt(1, won ? 1 : 0);
-            updateStmt.setInt(2, score);
-            updateStmt.setInt(3, newHighest);
-            updateStmt.setInt(4, coinsCollected);
-            updateStmt.setString(5, username);
-            updateStmt.executeUpdate();
-            updateStmt.close();
-        } else {
-            // Insert new record
-            String insertQuery = "INSERT INTO player_stats (username, total_maze_games, total_maze_wins, total_maze_score, highest_maze_score, total_coins_collected) " +
-                "VALUES (?, 1, ?, ?, ?, ?)";
-            PreparedStatement insertStmt = conn.prepareStatement(insertQuery);
-            insertStmt.setString(1, username);
-            insertStmt.setInt(2, won ? 1 : 0);
-            insertStmt.setInt(3, score);
-            insertStmt.setInt(4, score);
-            insertStmt.setInt(5, coinsCollected);
-            insertStmt.executeUpdate();
-            insertStmt.close();
+            if (pvpCount > 0) pvp.executeBatch();
+            if (mazeCount > 0) maze.executeBatch();
+            if (huntCount > 0) hunt.executeBatch();
         }
-        
-        rs.close();
-        checkStmt.close();
     }
     
     /**
@@ -287,6 +179,8 @@ public class GameHistoryDAO {
                 sb.append(", Maze Games: ").append(rs.getInt("total_maze_games"));
                 sb.append(", Maze Wins: ").append(rs.getInt("total_maze_wins"));
                 sb.append(", Best Maze: ").append(rs.getInt("highest_maze_score"));
+                sb.append(", Hunt Games: ").append(rs.getInt("total_hunt_games"));
+                sb.append(", Best Hunt: ").append(rs.getInt("highest_hunt_score"));
                 
                 rs.close();
                 stmt.close();
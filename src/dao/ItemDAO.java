@@ -0,0 +1,224 @@
+package dao;
+
+import databaseConnect.DatabaseExecutor;
+import databaseConnect.ShopDatabaseConnection;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.function.Function;
+
+/**
+ * DAO for the legacy item shop (game_shop database).
+ * Items are read once into an in-memory catalog, reloaded when a purchase finds it out of date;
+ * purchases read the price and debit it in one transaction, like skin purchases.
+ */
+public class ItemDAO {
+
+    /**
+     * Immutable list of items, with its network frame encoded on first use
+     */
+    public static final class Catalog {
+        private final List<Item> items;
+        private volatile String frame;
+
+        Catalog(List<Item> items) {
+            this.items = Collections.unmodifiableList(items);
+        }
+
+        public List<Item> getItems() {
+            return items;
+        }
+
+        /**
+         * @return the item with this id, or null if it is not in the catalog
+         */
+        public Item find(int itemId) {
+            for (Item item : items) {
+                if (item.id == itemId) return item;
+            }
+            return null;
+        }
+
+        /**
+         * Get the network frame for this catalog, encoding it on first use only
+         * @param encoder turns the items into the packet sent to clients
+         */
+        public String frame(Function<List<Item>, String> encoder) {
+            String f = frame;
+            if (f == null) {
+                f = encoder.apply(items);
+                frame = f;
+            }
+            return f;
+        }
+    }
+
+    private volatile Catalog catalog;
+
+    /**
+     * Get the item catalog, loading it from the database on first use
+     */
+    public Catalog getCatalog() {
+        Catalog c = catalog;
+        if (c == null || c.items.isEmpty()) {
+            reloadCatalog();
+            c = catalog;
+        }
+        return c;
+    }
+
+    /**
+     * Re-read the items and swap in a new catalog
+     */
+    public void reloadCatalog() {
+        List<Item> items = new ArrayList<>();
+        Connection conn = ShopDatabaseConnection.getConnection();
+        if (conn != null) {
+            try (Statement statement = conn.createStatement();
+                 ResultSet rs = statement.executeQuery("SELECT id, name, price FROM items ORDER BY id")) {
+                while (rs.next()) {
+                    Item item = new Item();
+                    item.id = rs.getInt("id");
+                    item.name = rs.getString("name");
+                    item.price = rs.getInt("price");
+                    items.add(item);
+                }
+            } catch (SQLException e) {
+                e.printStackTrace();
+            } finally {
+                try { conn.close(); } catch (SQLException e) { e.printStackTrace(); }
+            }
+        }
+        // Keep the last good catalog if the read failed
+        if (!items.isEmpty() || catalog == null) {
+            catalog = new Catalog(items);
+        }
+    }
+
+    /**
+     * Buy an item in one transaction: read its current price, debit the balance if it covers the price,
+     * then add the item. The price is never taken from the cached catalog; when it no longer matches
+     * the table the catalog is dropped, so the next list shows the change.
+     * @return the message shown to the player
+     */
+    public String buyItem(int userId, int itemId) {
+        Connection conn = ShopDatabaseConnection.getConnection();
+        if (conn == null) return "Purchase failed!";
+
+        try {
+            conn.setAutoCommit(false);
+
+            // Current price, locked until the purchase commits
+            int price;
+            try (PreparedStatement priceStmt = conn.prepareStatement("SELECT price FROM items WHERE id = ? FOR UPDATE")) {
+                priceStmt.setInt(1, itemId);
+                try (ResultSet rs = priceStmt.executeQuery()) {
+                    if (!rs.next()) {
+                        conn.rollback();
+                        invalidateIfStale(itemId, -1);
+                        return "Item not found!";
+                    }
+                    price = rs.getInt("price");
+                }
+            }
+            invalidateIfStale(itemId, price);
+
+            // Deduct the price, in one statement that also checks the balance
+            try (PreparedStatement debit = conn.prepareStatement(
+                    "UPDATE users SET balance = balance - ? WHERE id = ? AND balance >= ?")) {
+                debit.setInt(1, price);
+                debit.setInt(2, userId);
+                debit.setInt(3, price);
+                if (debit.executeUpdate() == 0) {
+                    conn.rollback();
+                    return userExists(conn, userId) ? "Insufficient balance!" : "User not found!";
+                }
+            }
+
+            // Add item to user's inventory
+            try (PreparedStatement addItem = conn.prepareStatement(
+                    "INSERT INTO userItems (user_id, item_id) VALUES (?, ?)")) {
+                addItem.setInt(1, userId);
+                addItem.setInt(2, itemId);
+                addItem.executeUpdate();
+            }
+
+            conn.commit();
+            return "Purchase successful!";
+        } catch (SQLException e) {
+            e.printStackTrace();
+            try { conn.rollback(); } catch (SQLException e2) { e2.printStackTrace(); }
+            return "Purchase failed!";
+        } finally {
+            try {
+                conn.setAutoCommit(true);
+                conn.close();
+            } catch (SQLException e) {
+                e.printStackTrace();
+            }
+        }
+    }
+
+    /**
+     * Drop the catalog if it shows another price for the item, or lists an item that is gone
+     * @param price the price in the table, -1 if the item no longer exists
+     */
+    private void invalidateIfStale(int itemId, int price) {
+        Catalog c = catalog;
+        if (c == null) return;
+        Item cached = c.find(itemId);
+        int cachedPrice = cached != null ? cached.price : -1;
+        if (cachedPrice != price) {
+            catalog = null;
+        }
+    }
+
+    private boolean userExists(Connection conn, int userId) throws SQLException {
+        try (PreparedStatement stmt = conn.prepareStatement("SELECT 1 FROM users WHERE id = ?")) {
+            stmt.setInt(1, userId);
+            try (ResultSet rs = stmt.executeQuery()) {
+                return rs.next();
+            }
+        }
+    }
+
+    // ============ Async variants (run on the DatabaseExecutor) ============
+
+    public CompletableFuture<Catalog> getCatalogAsync() {
+        // Served from memory once loaded
+        Catalog c = catalog;
+        if (c != null && !c.items.isEmpty()) {
+            return CompletableFuture.completedFuture(c);
+        }
+        return DatabaseExecutor.supply(this::getCatalog);
+    }
+
+    public CompletableFuture<String> buyItemAsync(int userId, int itemId) {
+        return DatabaseExecutor.supply(() -> buyItem(userId, itemId));
+    }
+
+    public static class Item {
+        public int id;
+        public String name;
+        public int price;
+
+        public String toProtocolString() {
+            return id + "|" + name + "|" + price;
+        }
+
+        /**
+         * @return the line shown in the shop list, "id: name - price coins"
+         */
+        @Override
+        public String toString() {
+            return id + ": " + name + " - " + price + " coins";
+        }
+    }
+}
@@ -6,6 +6,8 @@ import java.sql.Connection;
 import java.sql.PreparedStatement;
 import java.sql.ResultSet;
 import java.sql.SQLException;
+import java.util.HashMap;
+import java.util.Map;
 
 public class LeaderBoardDAO {
 
@@ -13,31 +15,40 @@ public class LeaderBoardDAO {
     }
 
     /**
-     * Get the top 20 players from the database
+     * Get the points of one player, for players missing from the in-memory leaderboard
      *
-     * @return a string containing the top 20 players
+     * @return the points, or null if there is no such user
+     * @throws SQLException if the database cannot be read
      */
-    public String getTop20() {
+    public Integer getPoints(String username) throws SQLException {
         try (Connection conn = DatabaseConnection.getConnection()) {
-            String query = "SELECT username, points FROM users ORDER BY points DESC LIMIT 20";
-            try (PreparedStatement preparedStatement = conn.prepareStatement(query);
-                 ResultSet resultSet = preparedStatement.executeQuery()) {
-
-                StringBuilder result = new StringBuilder();
-                while (resultSet.next()) {
-                    result.append(",");
-                    String username = resultSet.getString("username");
-                    int score = resultSet.getInt("points");
-
-                    result.append(username).append(" ").append(score);
-
+            if (conn == null) throw new SQLException("No database connection");
+            try (PreparedStatement preparedStatement = conn.prepareStatement("SELECT points FROM users WHERE username = ?")) {
+                preparedStatement.setString(1, username);
+                try (ResultSet resultSet = preparedStatement.executeQuery()) {
+                    return resultSet.next() ? resultSet.getInt("points") : null;
                 }
+            }
+        }
+    }
 
-                return result.toString();
+    /**
+     * Get the points of every player, used to build the in-memory leaderboard at startup
+     *
+     * @return points by username
+     */
+    public Map<String, Integer> getAllPoints() {
+        Map<String, Integer> points = new HashMap<>();
+        try (Connection conn = DatabaseConnection.getConnection();
+             PreparedStatement preparedStatement = conn.prepareStatement("SELECT username, points FROM users");
+             ResultSet resultSet = preparedStatement.executeQuery()) {
+
+            while (resultSet.next()) {
+                points.put(resultSet.getString("username"), resultSet.getInt("points"));
             }
         } catch (SQLException e) {
             e.printStackTrace();
-            return "Failed to update table data";
         }
+        return points;
     }
 }
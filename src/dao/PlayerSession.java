@@ -0,0 +1,163 @@
+package dao;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Account state of one online player: coins, points, owned and equipped skins, and stats.
+ * Loaded once at Hello by {@link PlayerSessionDAO}, then read from memory by the shop and
+ * score handlers, which update it alongside their database writes.
+ * Handlers on different threads may touch the same session, so every accessor is synchronized.
+ */
+public class PlayerSession {
+
+    private final String username;
+    private int coins;
+    private int points;
+    private final List<ShopDAO.PlayerSkin> ownedSkins = new ArrayList<>();
+    private String equippedSkin = "1";
+    private final Map<String, Integer> stats = new LinkedHashMap<>();
+
+    public PlayerSession(String username) {
+        this.username = username;
+    }
+
+    public String getUsername() {
+        return username;
+    }
+
+    public synchronized int getCoins() {
+        return coins;
+    }
+
+    public synchronized void setCoins(int coins) {
+        this.coins = coins;
+    }
+
+    /**
+     * @param delta coins to add, may be negative
+     * @return the new balance
+     */
+    public synchronized int addCoins(int delta) {
+        coins += delta;
+        return coins;
+    }
+
+    public synchronized int getPoints() {
+        return points;
+    }
+
+    public synchronized void setPoints(int points) {
+        this.points = points;
+    }
+
+    public synchronized void addPoints(int delta) {
+        points += delta;
+    }
+
+    /**
+     * @return a copy of the owned skins
+     */
+    public synchronized List<ShopDAO.PlayerSkin> getOwnedSkins() {
+        return new ArrayList<>(ownedSkins);
+    }
+
+    public synchronized void setOwnedSkins(List<ShopDAO.PlayerSkin> skins) {
+        ownedSkins.clear();
+        ownedSkins.addAll(skins);
+        for (ShopDAO.PlayerSkin skin : skins) {
+            if (skin.isEquipped) {
+                equippedSkin = skin.skinFolder;
+            }
+        }
+    }
+
+    synchronized void addOwnedSkin(ShopDAO.PlayerSkin skin) {
+        ownedSkins.add(skin);
+    }
+
+    /**
+     * @return true if the player owns the skin
+     */
+    public synchronized boolean ownsSkin(int skinId) {
+        return findSkin(skinId) != null;
+    }
+
+    /**
+     * @return number of skins marked equipped, normally 1
+     */
+    public synchronized int equippedSkinCount() {
+        int count = 0;
+        for (ShopDAO.PlayerSkin skin : ownedSkins) {
+            if (skin.isEquipped) count++;
+        }
+        return count;
+    }
+
+    /**
+     * Mark an owned skin as the equipped one
+     * @return the skin folder, or null if the skin is not owned
+     */
+    public synchronized String equip(int skinId) {
+        ShopDAO.PlayerSkin target = findSkin(skinId);
+        if (target == null) return null;
+        for (ShopDAO.PlayerSkin skin : ownedSkins) {
+            skin.isEquipped = skin == target;
+        }
+        equippedSkin = target.skinFolder;
+        return equippedSkin;
+    }
+
+    public synchronized String getEquippedSkin() {
+        return equippedSkin;
+    }
+
+    /**
+     * @return a copy of the player_stats columns
+     */
+    public synchronized Map<String, Integer> getStats() {
+        return new LinkedHashMap<>(stats);
+    }
+
+    synchronized void setStat(String column, int value) {
+        stats.put(column, value);
+    }
+
+    /**
+     * Apply one game result to the in-memory stats, mirroring the player_stats upserts
+     */
+    public synchronized void recordGame(String gameMode, int score, int kills, int coinsCollected, boolean won) {
+        switch (gameMode) {
+            case "pvp":
+                stats.merge("total_pvp_games", 1, Integer::sum);
+                stats.merge("total_pvp_gold", score, Integer::sum);
+                stats.merge("total_pvp_kills", kills, Integer::sum);
+                stats.merge("highest_pvp_gold", score, Math::max);
+                break;
+            case "maze":
+                stats.merge("total_maze_games", 1, Integer::sum);
+                stats.merge("total_maze_wins", won ? 1 : 0, Integer::sum);
+                stats.merge("total_maze_score", score, Integer::sum);
+                stats.merge("highest_maze_score", score, Math::max);
+                stats.merge("total_coins_collected", coinsCollected, Integer::sum);
+                break;
+            case "hunt":
+                stats.merge("total_hunt_games", 1, Integer::sum);
+                stats.merge("total_hunt_score", score, Integer::sum);
+                stats.merge("highest_hunt_score", score, Math::max);
+                stats.merge("total_coins_collected", coinsCollected, Integer::sum);
+                break;
+            default:
+                break;
+        }
+    }
+
+    private ShopDAO.PlayerSkin findSkin(int skinId) {
+        for (ShopDAO.PlayerSkin skin : ownedSkins) {
+            if (skin.id == skinId) return skin;
+        }
+        return null;
+    }
+}
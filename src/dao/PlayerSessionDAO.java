@@ -0,0 +1,135 @@
+package dao;
+
+import databaseConnect.DatabaseConnection;
+import databaseConnect.DatabaseExecutor;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * Loads a {@link PlayerSession} with one query joining users, player_skins, skins and player_stats.
+ * Replaces the giveDefaultSkin, getEquippedSkin, getPlayerCoins and getPlayerSkins
+ * round trips a joining player used to cost.
+ */
+public class PlayerSessionDAO {
+
+    private static final String[] STAT_COLUMNS = {
+        "total_pvp_games", "total_pvp_gold", "total_pvp_kills", "highest_pvp_gold",
+        "total_maze_games", "total_maze_wins", "total_maze_score", "highest_maze_score",
+        "total_coins_collected", "total_hunt_games", "total_hunt_score", "highest_hunt_score"
+    };
+
+    private static final String HYDRATE_QUERY;
+
+    static {
+        StringBuilder sb = new StringBuilder("SELECT u.coins, u.points, ps.skin_id, ps.is_equipped, " +
+            "s.name, s.description, s.skin_folder");
+        for (String column : STAT_COLUMNS) {
+            sb.append(", st.").append(column);
+        }
+        sb.append(" FROM users u " +
+            "LEFT JOIN player_skins ps ON ps.username = u.username " +
+            "LEFT JOIN skins s ON s.id = ps.skin_id " +
+            "LEFT JOIN player_stats st ON st.username = u.username " +
+            "WHERE u.username = ? " +
+            "ORDER BY ps.skin_id");
+        HYDRATE_QUERY = sb.toString();
+    }
+
+    private final ShopDAO shopDAO;
+
+    public PlayerSessionDAO(ShopDAO shopDAO) {
+        this.shopDAO = shopDAO;
+    }
+
+    /**
+     * Load the session of a joining player.
+     * A player without skins gets the default one; a player with none or several equipped
+     * gets their first one equipped.
+     * @param username the player
+     * @return the session, or null if the user does not exist or the database is unreachable
+     */
+    public PlayerSession load(String username) {
+        PlayerSession session = new PlayerSession(username);
+        if (!hydrate(session)) return null;
+
+        if (session.getOwnedSkins().isEmpty()) {
+            // First join: rare, so the existing slow path is fine
+            shopDAO.giveDefaultSkin(username);
+            if (!hydrate(session)) return null;
+        } else {
+            int equipped = session.equippedSkinCount();
+            if (equipped != 1) {
+                // Several equipped is left over from an old equip bug
+                equipFirstSkin(session);
+                if (equipped > 1) {
+                    System.out.println("Fixed multiple equipped skins for user: " + username);
+                }
+            }
+        }
+        return session;
+    }
+
+    public CompletableFuture<PlayerSession> loadAsync(String username) {
+        return DatabaseExecutor.supply(() -> load(username));
+    }
+
+    private boolean hydrate(PlayerSession session) {
+        boolean[] found = {false};
+        // Read inside the write-behind read lock so queued coin deltas are counted exactly once
+        int coins = WriteBehindQueue.get().readCoins(session.getUsername(), username -> {
+            Connection conn = DatabaseConnection.getConnection();
+            if (conn == null) return 0;
+            try (PreparedStatement stmt = conn.prepareStatement(HYDRATE_QUERY)) {
+                stmt.setString(1, username);
+                try (ResultSet rs = stmt.executeQuery()) {
+                    List<ShopDAO.PlayerSkin> skins = new ArrayList<>();
+                    int stored = 0;
+                    while (rs.next()) {
+                        if (!found[0]) {
+                            found[0] = true;
+                            stored = rs.getInt("coins");
+                            session.setPoints(rs.getInt("points"));
+                            for (String column : STAT_COLUMNS) {
+                                session.setStat(column, rs.getInt(column));
+                            }
+                        }
+                        int skinId = rs.getInt("skin_id");
+                        if (!rs.wasNull()) {
+                            ShopDAO.PlayerSkin skin = new ShopDAO.PlayerSkin();
+                            skin.id = skinId;
+                            skin.name = rs.getString("name");
+                            skin.description = rs.getString("description");
+                            skin.skinFolder = rs.getString("skin_folder");
+                            skin.isEquipped = rs.getBoolean("is_equipped");
+                            skins.add(skin);
+                        }
+                    }
+                    session.setOwnedSkins(skins);
+                    return stored;
+                }
+            } catch (SQLException e) {
+                e.printStackTrace();
+                return 0;
+            } finally {
+                try { conn.close(); } catch (SQLException e) { e.printStackTrace(); }
+            }
+        });
+        session.setCoins(coins);
+        return found[0];
+    }
+
+    private void equipFirstSkin(PlayerSession session) {
+        List<ShopDAO.PlayerSkin> skins = session.getOwnedSkins();
+        int firstSkinId = skins.get(0).id;
+        String result = shopDAO.equipSkin(session.getUsername(), firstSkinId);
+        if (result.startsWith("Success")) {
+            session.equip(firstSkinId);
+        }
+    }
+}
@@ -0,0 +1,293 @@
+package dao;
+
+import databaseConnect.DatabaseConnection;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+
+/**
+ * Versioned schema setup, run once at startup before any DAO is used.
+ * Applied versions are recorded in the schema_version table, so each migration runs once per database.
+ * Migrations are only ever appended, never edited, once released.
+ * DAOs assume the schema exists and issue no DDL themselves.
+ */
+public class SchemaMigrator {
+
+    /**
+     * One schema change
+     */
+    @FunctionalInterface
+    private interface Step {
+        void apply(Connection conn) throws SQLException;
+    }
+
+    private static final class Migration {
+        final int version;
+        final String description;
+        final Step step;
+
+        Migration(int version, String description, Step step) {
+            this.version = version;
+            this.description = description;
+            this.step = step;
+        }
+    }
+
+    private final List<Migration> migrations = new ArrayList<>();
+
+    public SchemaMigrator() {
+        migrations.add(new Migration(1, "create tables", this::createTables));
+        migrations.add(new Migration(2, "insert default skins", this::insertDefaultSkins));
+        migrations.add(new Migration(3, "add lookup indexes", this::addIndexes));
+        migrations.add(new Migration(4, "add hunt stats", this::addHuntStats));
+        migrations.add(new Migration(5, "align username collations", this::alignUsernameCollations));
+    }
+
+    /**
+     * Apply every migration newer than the database's version.
+     * Stops at the first failure so later migrations never run on a half-migrated schema.
+     * @return true if the schema is up to date
+     */
+    public boolean migrate() {
+        Connection conn = DatabaseConnection.getConnection();
+        if (conn == null) return false;
+
+        try {
+            execute(conn, "CREATE TABLE IF NOT EXISTS schema_version (" +
+                    "  version INT PRIMARY KEY," +
+                    "  description VARCHAR(255) NOT NULL," +
+                    "  applied_at TIMESTAMP DEFAULT CURRENT_TIMESTAMP" +
+                    ")");
+            int current = currentVersion(conn);
+
+            for (Migration migration : migrations) {
+                if (migration.version <= current) continue;
+
+                System.out.println("Applying schema migration " + migration.version + ": " + migration.description);
+                migration.step.apply(conn);
+                try (PreparedStatement stmt = conn.prepareStatement(
+                        "INSERT INTO schema_version (version, description) VALUES (?, ?)")) {
+                    stmt.setInt(1, migration.version);
+                    stmt.setString(2, migration.description);
+                    stmt.executeUpdate();
+                }
+            }
+            return true;
+        } catch (SQLException e) {
+            System.err.println("Schema migration failed: " + e.getMessage());
+            e.printStackTrace();
+            return false;
+        } finally {
+            try { conn.close(); } catch (SQLException e) { e.printStackTrace(); }
+        }
+    }
+
+    private int currentVersion(Connection conn) throws SQLException {
+        try (Statement stmt = conn.createStatement();
+             ResultSet rs = stmt.executeQuery("SELECT COALESCE(MAX(version), 0) FROM schema_version")) {
+            rs.next();
+            return rs.getInt(1);
+        }
+    }
+
+    // ============ Migrations ============
+
+    private void createTables(Connection conn) throws SQLException {
+        execute(conn, "CREATE TABLE IF NOT EXISTS users (" +
+                "  id INT AUTO_INCREMENT PRIMARY KEY," +
+                "  username VARCHAR(255) NOT NULL," +
+                "  email VARCHAR(255) NOT NULL," +
+                "  password_hash VARCHAR(255) NOT NULL," +
+                "  coins INT NOT NULL DEFAULT 100," +
+                "  points INT NOT NULL DEFAULT 0" +
+                ")");
+        // Databases created before the shop have no coins column
+        if (!columnExists(conn, "users", "coins")) {
+            execute(conn, "ALTER TABLE users ADD COLUMN coins INT DEFAULT 100");
+        }
+
+        execute(conn, "CREATE TABLE IF NOT EXISTS skins (" +
+                "  id INT AUTO_INCREMENT PRIMARY KEY," +
+                "  name VARCHAR(100) NOT NULL," +
+                "  description VARCHAR(255)," +
+                "  price INT NOT NULL DEFAULT 0," +
+                "  skin_folder VARCHAR(50) NOT NULL," +
+                "  is_default BOOLEAN DEFAULT FALSE," +
+                "  is_active BOOLEAN DEFAULT TRUE" +
+                ")");
+
+        execute(conn, "CREATE TABLE IF NOT EXISTS player_skins (" +
+                "  id INT AUTO_INCREMENT PRIMARY KEY," +
+                "  username VARCHAR(50) NOT NULL," +
+                "  skin_id INT NOT NULL," +
+                "  is_equipped BOOLEAN DEFAULT FALSE," +
+                "  purchased_at TIMESTAMP DEFAULT CURRENT_TIMESTAMP," +
+                "  UNIQUE KEY unique_player_skin (username, skin_id)" +
+                ")");
+
+        execute(conn, "CREATE TABLE IF NOT EXISTS game_history (" +
+                "  id INT AUTO_INCREMENT PRIMARY KEY," +
+                "  username VARCHAR(50) NOT NULL," +
+                "  game_mode VARCHAR(20) NOT NULL," +
+                "  score INT DEFAULT 0," +
+                "  kills INT DEFAULT 0," +
+                "  coins_collected INT DEFAULT 0," +
+                "  won BOOLEAN DEFAULT FALSE," +
+                "  points_earned INT DEFAULT 0," +
+                "  played_at TIMESTAMP DEFAULT CURRENT_TIMESTAMP," +
+                "  INDEX idx_username (username)," +
+                "  INDEX idx_game_mode (game_mode)" +
+                ")");
+
+        execute(conn, "CREATE TABLE IF NOT EXISTS player_stats (" +
+                "  username VARCHAR(50) PRIMARY KEY," +
+                "  total_pvp_games INT DEFAULT 0," +
+                "  total_pvp_gold INT DEFAULT 0," +
+                "  total_pvp_kills INT DEFAULT 0," +
+                "  highest_pvp_gold INT DEFAULT 0," +
+                "  total_maze_games INT DEFAULT 0," +
+                "  total_maze_wins INT DEFAULT 0," +
+                "  total_maze_score INT DEFAULT 0," +
+                "  highest_maze_score INT DEFAULT 0," +
+                "  total_coins_collected INT DEFAULT 0," +
+                "  last_played TIMESTAMP DEFAULT CURRENT_TIMESTAMP ON UPDATE CURRENT_TIMESTAMP" +
+                ")");
+    }
+
+    private void insertDefaultSkins(Connection conn) throws SQLException {
+        try (Statement check = conn.createStatement();
+             ResultSet rs = check.executeQuery("SELECT COUNT(*) FROM skins")) {
+            rs.next();
+            if (rs.getInt(1) > 0) return;
+        }
+
+        String insertQuery = "INSERT INTO skins (name, description, price, skin_folder, is_default) VALUES (?, ?, ?, ?, ?)";
+        try (PreparedStatement stmt = conn.prepareStatement(insertQuery)) {
+            // Available skins
+            addSkin(stmt, "Default Hero", "The classic adventurer", 0, "1", true);
+            addSkin(stmt, "Blue Warrior", "A brave warrior in blue", 100, "2", false);
+
+            // Skins coming soon
+            addSkin(stmt, "Red Knight", "A fierce red knight", 200, "3", false);
+            addSkin(stmt, "Gold Champion", "The legendary champion", 500, "4", false);
+            addSkin(stmt, "Shadow Ninja", "Master of shadows", 300, "5", false);
+            addSkin(stmt, "Ice Mage", "Wielder of frost magic", 400, "6", false);
+            stmt.executeBatch();
+        }
+        System.out.println("Default skins inserted!");
+    }
+
+    private void addSkin(PreparedStatement stmt, String name, String desc, int price, String folder, boolean isDefault) throws SQLException {
+        stmt.setString(1, name);
+        stmt.setString(2, desc);
+        stmt.setInt(3, price);
+        stmt.setString(4, folder);
+        stmt.setBoolean(5, isDefault);
+        stmt.addBatch();
+    }
+
+    private void addIndexes(Connection conn) throws SQLException {
+        // Indexes are matched by columns, not name, so databases built from the README schema
+        // (username UNIQUE, idx_points) do not get a second copy of the same index.
+        // Login, register and every point or coin update look users up by username.
+        // Fails if the table already holds duplicate usernames, which must be cleaned up by hand.
+        if (!indexExists(conn, "users", "username", true)) {
+            execute(conn, "ALTER TABLE users ADD UNIQUE INDEX idx_users_username (username)");
+        }
+        // ORDER BY points for the top players
+        if (!indexExists(conn, "users", "points", false)) {
+            execute(conn, "ALTER TABLE users ADD INDEX idx_users_points (points)");
+        }
+        // Skins owned or equipped by one player
+        if (!indexExists(conn, "player_skins", "username,is_equipped", false)) {
+            execute(conn, "ALTER TABLE player_skins ADD INDEX idx_player_skins_equipped (username, is_equipped)");
+        }
+    }
+
+    private void addHuntStats(Connection conn) throws SQLException {
+        if (!columnExists(conn, "player_stats", "total_hunt_games")) {
+            execute(conn, "ALTER TABLE player_stats" +
+                    " ADD COLUMN total_hunt_games INT DEFAULT 0," +
+                    " ADD COLUMN total_hunt_score INT DEFAULT 0," +
+                    " ADD COLUMN highest_hunt_score INT DEFAULT 0");
+        }
+    }
+
+    private void alignUsernameCollations(Connection conn) throws SQLException {
+        // database.sql gives users.username utf8mb4_general_ci and the per-player tables utf8mb4_0900_ai_ci,
+        // which makes joins on username fail with "Illegal mix of collations"
+        String collation = columnCollation(conn, "users", "username");
+        if (collation == null) return;
+        for (String table : new String[] {"player_skins", "game_history", "player_stats"}) {
+            String current = columnCollation(conn, table, "username");
+            if (current != null && !current.equalsIgnoreCase(collation)) {
+                execute(conn, "ALTER TABLE " + table + " MODIFY username VARCHAR(50) NOT NULL COLLATE " + collation);
+            }
+        }
+    }
+
+    // ============ Helpers ============
+
+    private void execute(Connection conn, String sql) throws SQLException {
+        try (Statement stmt = conn.createStatement()) {
+            stmt.executeUpdate(sql);
+        }
+    }
+
+    private boolean columnExists(Connection conn, String table, String column) throws SQLException {
+        String query = "SELECT 1 FROM information_schema.columns " +
+                "WHERE table_schema = DATABASE() AND table_name = ? AND column_name = ?";
+        try (PreparedStatement stmt = conn.prepareStatement(query)) {
+            stmt.setString(1, table);
+            stmt.setString(2, column);
+            try (ResultSet rs = stmt.executeQuery()) {
+                return rs.next();
+            }
+        }
+    }
+
+    private String columnCollation(Connection conn, String table, String column) throws SQLException {
+        String query = "SELECT collation_name FROM information_schema.columns " +
+                "WHERE table_schema = DATABASE() AND table_name = ? AND column_name = ?";
+        try (PreparedStatement stmt = conn.prepareStatement(query)) {
+            stmt.setString(1, table);
+            stmt.setString(2, column);
+            try (ResultSet rs = stmt.executeQuery()) {
+                return rs.next() ? rs.getString(1) : null;
+            }
+        }
+    }
+
+    /**
+     * @param columns comma separated, in index order
+     * @param unique true to only accept a unique index on exactly these columns
+     * @return true if an index of the table starts with these columns
+     */
+    private boolean indexExists(Connection conn, String table, String columns, boolean unique) throws SQLException {
+        String query = "SELECT non_unique, GROUP_CONCAT(column_name ORDER BY seq_in_index) " +
+                "FROM information_schema.statistics " +
+                "WHERE table_schema = DATABASE() AND table_name = ? " +
+                "GROUP BY index_name, non_unique";
+        try (PreparedStatement stmt = conn.prepareStatement(query)) {
+            stmt.setString(1, table);
+            try (ResultSet rs = stmt.executeQuery()) {
+                while (rs.next()) {
+                    String indexed = rs.getString(2);
+                    if (unique) {
+                        if (rs.getInt(1) == 0 && indexed.equalsIgnoreCase(columns)) return true;
+                    } else if (indexed.equalsIgnoreCase(columns)
+                            || indexed.toLowerCase(Locale.ROOT).startsWith(columns.toLowerCase(Locale.ROOT) + ",")) {
+                        return true;
+                    }
+                }
+                return false;
+            }
+        }
+    }
+}
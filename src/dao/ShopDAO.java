@@ -1,116 +1,61 @@
 package dao;
 
 import databaseConnect.DatabaseConnection;
+import databaseConnect.DatabaseExecutor;
 
 import java.sql.Connection;
 import java.sql.PreparedStatement;
 import java.sql.ResultSet;
 import java.sql.SQLException;
+import java.sql.SQLIntegrityConstraintViolationException;
 import java.util.ArrayList;
 import java.util.List;
+import java.util.concurrent.CompletableFuture;
 
 /**
  * DAO for managing Shop Skins
  */
 public class ShopDAO {
     
+    private final SkinCache skinCache = new SkinCache();
+    private final SkinCatalog skinCatalog = new SkinCatalog();
+    // Set when a purchase finds the skins table out of step with the catalog
+    private volatile boolean skinCatalogStale;
+    
     public ShopDAO() {
-        initializeTables();
     }
     
     /**
-     * Initialize skins tables
+     * @return the equipped skins of online players
      */
-    public void initializeTables() {
-        Connection conn = DatabaseConnection.getConnection();
-        if (conn == null) return;
-        
-        try {
-            // Create skins table
-            String createSkinsTable = 
-                "CREATE TABLE IF NOT EXISTS skins (" +
-                "  id INT AUTO_INCREMENT PRIMARY KEY," +
-                "  name VARCHAR(100) NOT NULL," +
-                "  description VARCHAR(255)," +
-                "  price INT NOT NULL DEFAULT 0," +
-                "  skin_folder VARCHAR(50) NOT NULL," +
-                "  is_default BOOLEAN DEFAULT FALSE," +
-                "  is_active BOOLEAN DEFAULT TRUE" +
-                ")";
-            PreparedStatement stmt = conn.prepareStatement(createSkinsTable);
-            stmt.executeUpdate();
-            stmt.close();
-            
-            // Create player_skins table
-            String createPlayerSkinsTable = 
-                "CREATE TABLE IF NOT EXISTS player_skins (" +
-                "  id INT AUTO_INCREMENT PRIMARY KEY," +
-                "  username VARCHAR(50) NOT NULL," +
-                "  skin_id INT NOT NULL," +
-                "  is_equipped BOOLEAN DEFAULT FALSE," +
-                "  purchased_at TIMESTAMP DEFAULT CURRENT_TIMESTAMP," +
-                "  UNIQUE KEY unique_player_skin (username, skin_id)" +
-                ")";
-            stmt = conn.prepareStatement(createPlayerSkinsTable);
-            stmt.executeUpdate();
-            stmt.close();
-            
-            // Add coins column to users if not exists
-            try {
-                String addCoinsColumn = "ALTER TABLE users ADD COLUMN coins INT DEFAULT 100";
-                stmt = conn.prepareStatement(addCoinsColumn);
-                stmt.executeUpdate();
-                stmt.close();
-            } catch (SQLException e) {
-                // Column exists
-            }
-            
-            insertDefaultSkins(conn);
-            
-        } catch (SQLException e) {
-            e.printStackTrace();
-        } finally {
-            try { conn.close(); } catch (SQLException e) { e.printStackTrace(); }
-        }
+    public SkinCache getSkinCache() {
+        return skinCache;
     }
     
-    private void insertDefaultSkins(Connection conn) throws SQLException {
-        String checkQuery = "SELECT COUNT(*) FROM skins";
-        PreparedStatement checkStmt = conn.prepareStatement(checkQuery);
-        ResultSet rs = checkStmt.executeQuery();
-        rs.next();
-        if (rs.getInt(1) > 0) {
-            rs.close();
-            checkStmt.close();
-            return;
+    /**
+     * Get the skin catalog, loading it from the database on first use
+     * and again once a purchase has found it out of date
+     */
+    public SkinCatalog.Snapshot getSkinCatalog() {
+        if (!skinCatalog.isLoaded() || skinCatalogStale) {
+            skinCatalogStale = false;
+            reloadSkinCatalog();
         }
-        rs.close();
-        checkStmt.close();
-        
-        String insertQuery = "INSERT INTO skins (name, description, price, skin_folder, is_default) VALUES (?, ?, ?, ?, ?)";
-        PreparedStatement stmt = conn.prepareStatement(insertQuery);
-        
-        // Available skins
-        addSkin(stmt, "Default Hero", "The classic adventurer", 0, "1", true);
-        addSkin(stmt, "Blue Warrior", "A brave warrior in blue", 100, "2", false);
-        
-        // Skins coming soon
-        addSkin(stmt, "Red Knight", "A fierce red knight", 200, "3", false);
-        addSkin(stmt, "Gold Champion", "The legendary champion", 500, "4", false);
-        addSkin(stmt, "Shadow Ninja", "Master of shadows", 300, "5", false);
-        addSkin(stmt, "Ice Mage", "Wielder of frost magic", 400, "6", false);
-        
-        stmt.close();
-        System.out.println("Default skins inserted!");
+        return skinCatalog.get();
     }
     
-    private void addSkin(PreparedStatement stmt, String name, String desc, int price, String folder, boolean isDefault) throws SQLException {
-        stmt.setString(1, name);
-        stmt.setString(2, desc);
-        stmt.setInt(3, price);
-        stmt.setString(4, folder);
-        stmt.setBoolean(5, isDefault);
-        stmt.executeUpdate();
+    /**
+     * Re-read the active skins and swap in a new catalog version if they changed.
+     * @return true if a new version was published
+     */
+    public boolean reloadSkinCatalog() {
+        List<SkinItem> skins = getAllSkins();
+        if (skins.isEmpty()) return false; // Keep the last good catalog if the read failed
+        boolean changed = skinCatalog.replace(skins);
+        if (changed) {
+            System.out.println("Skin catalog version " + skinCatalog.get().getVersion() + " loaded");
+        }
+        return changed;
     }
     
     /**
@@ -149,9 +94,16 @@ public class ShopDAO {
     }
     
     /**
-     * Get player's coins
+     * Get player's coins, including coins queued but not written yet
      */
     public int getPlayerCoins(String username) {
+        return WriteBehindQueue.get().readCoins(username, this::getStoredCoins);
+    }
+    
+    /**
+     * Get player's coins as stored in the database
+     */
+    private int getStoredCoins(String username) {
         Connection conn = DatabaseConnection.getConnection();
         if (conn == null) return 0;
         
@@ -180,110 +132,109 @@ public class ShopDAO {
     }
     
     /**
-     * Add coins to player's balance
+     * Add coins to player's balance. Queued, written with the next write-behind flush.
      * @param username player's username
      * @param amount amount to add (can be negative to deduct)
-     * @return true if successful
+     * @return true if queued
      */
     public boolean addCoins(String username, int amount) {
-        Connection conn = DatabaseConnection.getConnection();
-        if (conn == null) return false;
-        
-        try {
-            String query = "UPDATE users SET coins = coins + ? WHERE username = ?";
-            PreparedStatement stmt = conn.prepareStatement(query);
-            stmt.setInt(1, amount);
-            stmt.setString(2, username);
-            int rows = stmt.executeUpdate();
-            stmt.close();
-            
-            if (rows > 0) {
-                System.out.println("Added " + amount + " coins to " + username + " (new balance: " + getPlayerCoins(username) + ")");
-                return true;
-            }
-        } catch (SQLException e) {
-            e.printStackTrace();
-        } finally {
-            try { conn.close(); } catch (SQLException e) { e.printStackTrace(); }
-        }
-        
-        return false;
+        WriteBehindQueue.get().addCoins(username, amount);
+        return true;
     }
     
     /**
-     * Buy a skin
+     * Buy a skin in one transaction: check the skin is still on sale and read its price,
+     * claim the skin, debit the coins, then read back the owned skins.
+     * The insert relies on the unique (username, skin_id) key and the debit re-checks the balance,
+     * so concurrent purchases on one account can neither buy a skin twice nor overdraw.
+     * The catalog only screens out unknown ids; a skin deactivated or repriced since it was loaded
+     * is caught by the transaction, which also marks the catalog for a reload.
      */
-    public String buySkin(String username, int skinId) {
+    public PurchaseResult buySkin(String username, int skinId) {
+        SkinItem skin = getSkinCatalog().find(skinId);
+        if (skin == null) {
+            return PurchaseResult.failed("Skin not found");
+        }
+        if (!isForSale(skin.skinFolder)) {
+            return PurchaseResult.failed("Coming soon!");
+        }
+        // Coins earned but not written yet count towards the price
+        return WriteBehindQueue.get().withQueuedCoins(username, queued -> purchase(username, skin, queued));
+    }
+    
+    // Only these skin folders have sprites yet
+    private static boolean isForSale(String skinFolder) {
+        return skinFolder.equals("1") || skinFolder.equals("2") || skinFolder.equals("3");
+    }
+    
+    private PurchaseResult purchase(String username, SkinItem skin, int queuedCoins) {
         Connection conn = DatabaseConnection.getConnection();
-        if (conn == null) return "Error|Database error";
+        if (conn == null) return PurchaseResult.failed("Database error");
         
         try {
-            // Get skin info
-            String skinQuery = "SELECT * FROM skins WHERE id = ? AND is_active = TRUE";
-            PreparedStatement skinStmt = conn.prepareStatement(skinQuery);
-            skinStmt.setInt(1, skinId);
-            ResultSet skinRs = skinStmt.executeQuery();
-            
-            if (!skinRs.next()) {
-                skinRs.close();
-                skinStmt.close();
-                return "Error|Skin not found";
-            }
-            
-            int price = skinRs.getInt("price");
-            String skinName = skinRs.getString("name");
-            String skinFolder = skinRs.getString("skin_folder");
-            skinRs.close();
-            skinStmt.close();
+            conn.setAutoCommit(false);
             
-            if (!skinFolder.equals("1") && !skinFolder.equals("2") && !skinFolder.equals("3")) {
-                return "Error|Coming soon!";
+            // Current price, the catalog may be older than the skins table
+            int price;
+            try (PreparedStatement priceStmt = conn.prepareStatement(
+                    "SELECT price, skin_folder FROM skins WHERE id = ? AND is_active = TRUE FOR SHARE")) {
+                priceStmt.setInt(1, skin.id);
+                try (ResultSet rs = priceStmt.executeQuery()) {
+                    if (!rs.next()) {
+                        conn.rollback();
+                        skinCatalogStale = true;
+                        return PurchaseResult.failed("Skin not found");
+                    }
+                    price = rs.getInt("price");
+                    if (price != skin.price || !rs.getString("skin_folder").equals(skin.skinFolder)) {
+                        skinCatalogStale = true;
+                    }
+                    if (!isForSale(rs.getString("skin_folder"))) {
+                        conn.rollback();
+                        return PurchaseResult.failed("Coming soon!");
+                    }
+                }
             }
             
-            // Check if already owned
-            String ownQuery = "SELECT * FROM player_skins WHERE username = ? AND skin_id = ?";
-            PreparedStatement ownStmt = conn.prepareStatement(ownQuery);
-            ownStmt.setString(1, username);
-            ownStmt.setInt(2, skinId);
-            ResultSet ownRs = ownStmt.executeQuery();
-            
-            if (ownRs.next()) {
-                ownRs.close();
-                ownStmt.close();
-                return "Error|Already owned";
+            // Claim the skin, the unique key rejects a second copy
+            try (PreparedStatement insertStmt = conn.prepareStatement(
+                    "INSERT INTO player_skins (username, skin_id) VALUES (?, ?)")) {
+                insertStmt.setString(1, username);
+                insertStmt.setInt(2, skin.id);
+                insertStmt.executeUpdate();
+            } catch (SQLIntegrityConstraintViolationException e) {
+                conn.rollback();
+                return PurchaseResult.failed("Already owned");
             }
-            ownRs.close();
-            ownStmt.close();
             
-            // Check coins
-            int coins = getPlayerCoins(username);
-            if (coins < price) {
-                return "Error|Not enough coins";
+            // Deduct coins, in one statement that also checks the balance
+            try (PreparedStatement deductStmt = conn.prepareStatement(
+                    "UPDATE users SET coins = coins - ? WHERE username = ? AND coins >= ?")) {
+                deductStmt.setInt(1, price);
+                deductStmt.setString(2, username);
+                deductStmt.setInt(3, price - queuedCoins);
+                if (deductStmt.executeUpdate() == 0) {
+                    conn.rollback();
+                    return PurchaseResult.failed("Not enough coins");
+                }
             }
             
-            // Deduct coins
-            String deductQuery = "UPDATE users SET coins = coins - ? WHERE username = ?";
-            PreparedStatement deductStmt = conn.prepareStatement(deductQuery);
-            deductStmt.setInt(1, price);
-            deductStmt.setString(2, username);
-            deductStmt.executeUpdate();
-            deductStmt.close();
-            
-            // Add skin to player
-            String insertQuery = "INSERT INTO player_skins (username, skin_id) VALUES (?, ?)";
-            PreparedStatement insertStmt = conn.prepareStatement(insertQuery);
-            insertStmt.setString(1, username);
-            insertStmt.setInt(2, skinId);
-            insertStmt.executeUpdate();
-            insertStmt.close();
+            List<PlayerSkin> owned = readPlayerSkins(conn, username);
             
-            return "Success|" + skinName;
+            conn.commit();
+            return new PurchaseResult(true, skin.name, price, owned);
             
         } catch (SQLException e) {
             e.printStackTrace();
-            return "Error|Purchase failed";
+            try { conn.rollback(); } catch (SQLException e2) { e2.printStackTrace(); }
+            return PurchaseResult.failed("Purchase failed");
         } finally {
-            try { conn.close(); } catch (SQLException e) { e.printStackTrace(); }
+            try {
+                conn.setAutoCommit(true);
+                conn.close();
+            } catch (SQLException e) {
+                e.printStackTrace();
+            }
         }
     }
     
@@ -291,36 +242,38 @@ public class ShopDAO {
      * Get player's owned skins
      */
     public List<PlayerSkin> getPlayerSkins(String username) {
-        List<PlayerSkin> skins = new ArrayList<>();
         Connection conn = DatabaseConnection.getConnection();
-        if (conn == null) return skins;
+        if (conn == null) return new ArrayList<>();
         
         try {
-            String query = "SELECT ps.*, s.name, s.description, s.skin_folder " +
-                "FROM player_skins ps JOIN skins s ON ps.skin_id = s.id " +
-                "WHERE ps.username = ?";
-            PreparedStatement stmt = conn.prepareStatement(query);
-            stmt.setString(1, username);
-            ResultSet rs = stmt.executeQuery();
-            
-            while (rs.next()) {
-                PlayerSkin skin = new PlayerSkin();
-                skin.id = rs.getInt("skin_id");
-                skin.name = rs.getString("name");
-                skin.description = rs.getString("description");
-                skin.skinFolder = rs.getString("skin_folder");
-                skin.isEquipped = rs.getBoolean("is_equipped");
-                skins.add(skin);
-            }
-            
-            rs.close();
-            stmt.close();
+            return readPlayerSkins(conn, username);
         } catch (SQLException e) {
             e.printStackTrace();
+            return new ArrayList<>();
         } finally {
             try { conn.close(); } catch (SQLException e) { e.printStackTrace(); }
         }
-        
+    }
+    
+    private List<PlayerSkin> readPlayerSkins(Connection conn, String username) throws SQLException {
+        List<PlayerSkin> skins = new ArrayList<>();
+        String query = "SELECT ps.skin_id, ps.is_equipped, s.name, s.description, s.skin_folder " +
+            "FROM player_skins ps JOIN skins s ON ps.skin_id = s.id " +
+            "WHERE ps.username = ? ORDER BY ps.skin_id";
+        try (PreparedStatement stmt = conn.prepareStatement(query)) {
+            stmt.setString(1, username);
+            try (ResultSet rs = stmt.executeQuery()) {
+                while (rs.next()) {
+                    PlayerSkin skin = new PlayerSkin();
+                    skin.id = rs.getInt("skin_id");
+                    skin.name = rs.getString("name");
+                    skin.description = rs.getString("description");
+                    skin.skinFolder = rs.getString("skin_folder");
+                    skin.isEquipped = rs.getBoolean("is_equipped");
+                    skins.add(skin);
+                }
+            }
+        }
         return skins;
     }
     
@@ -365,6 +318,7 @@ public class ShopDAO {
             equipStmt.executeUpdate();
             equipStmt.close();
             
+            skinCache.put(username, skinFolder);
             return "Success|" + skinFolder;
             
         } catch (SQLException e) {
@@ -379,6 +333,20 @@ public class ShopDAO {
      * Get currently equipped skin
      */
     public String getEquippedSkin(String username) {
+        String cached = skinCache.get(username);
+        return cached != null ? cached : loadEquippedSkin(username);
+    }
+    
+    /**
+     * Read the equipped skin from the database and cache it
+     */
+    public String loadEquippedSkin(String username) {
+        String folder = readEquippedSkin(username);
+        skinCache.put(username, folder);
+        return folder;
+    }
+    
+    private String readEquippedSkin(String username) {
         Connection conn = DatabaseConnection.getConnection();
         if (conn == null) return "1";
         
@@ -495,6 +463,58 @@ public class ShopDAO {
         }
     }
     
+    // ============ Async variants (run on the DatabaseExecutor) ============
+    
+    public CompletableFuture<List<SkinItem>> getAllSkinsAsync() {
+        return DatabaseExecutor.supply(this::getAllSkins);
+    }
+    
+    public CompletableFuture<SkinCatalog.Snapshot> getSkinCatalogAsync() {
+        // Served from memory once loaded, until a purchase finds it out of date
+        if (skinCatalog.isLoaded() && !skinCatalogStale) {
+            return CompletableFuture.completedFuture(skinCatalog.get());
+        }
+        return DatabaseExecutor.supply(this::getSkinCatalog);
+    }
+    
+    public CompletableFuture<Integer> getPlayerCoinsAsync(String username) {
+        return DatabaseExecutor.supply(() -> getPlayerCoins(username));
+    }
+    
+    public CompletableFuture<Boolean> addCoinsAsync(String username, int amount) {
+        // Only queues the change, so it completes immediately
+        return CompletableFuture.completedFuture(addCoins(username, amount));
+    }
+    
+    public CompletableFuture<PurchaseResult> buySkinAsync(String username, int skinId) {
+        return DatabaseExecutor.supply(() -> buySkin(username, skinId));
+    }
+    
+    public CompletableFuture<List<PlayerSkin>> getPlayerSkinsAsync(String username) {
+        return DatabaseExecutor.supply(() -> getPlayerSkins(username));
+    }
+    
+    public CompletableFuture<String> equipSkinAsync(String username, int skinId) {
+        return DatabaseExecutor.supply(() -> equipSkin(username, skinId));
+    }
+    
+    public CompletableFuture<String> getEquippedSkinAsync(String username) {
+        // A cache hit needs no DB worker
+        String cached = skinCache.get(username);
+        if (cached != null) {
+            return CompletableFuture.completedFuture(cached);
+        }
+        return DatabaseExecutor.supply(() -> loadEquippedSkin(username));
+    }
+    
+    public CompletableFuture<String> loadEquippedSkinAsync(String username) {
+        return DatabaseExecutor.supply(() -> loadEquippedSkin(username));
+    }
+    
+    public CompletableFuture<Void> giveDefaultSkinAsync(String username) {
+        return DatabaseExecutor.run(() -> giveDefaultSkin(username));
+    }
+    
     // ============ Inner Classes ============
     
     public static class SkinItem {
@@ -510,6 +530,28 @@ public class ShopDAO {
         }
     }
     
+    /**
+     * Outcome of a purchase, with the coins debited and the owned skins read in the same transaction.
+     * Callers apply the price as a delta, so coins earned while the purchase ran are kept.
+     */
+    public static class PurchaseResult {
+        public final boolean success;
+        public final String message;
+        public final int price;
+        public final List<PlayerSkin> ownedSkins;
+        
+        public PurchaseResult(boolean success, String message, int price, List<PlayerSkin> ownedSkins) {
+            this.success = success;
+            this.message = message;
+            this.price = price;
+            this.ownedSkins = ownedSkins;
+        }
+        
+        static PurchaseResult failed(String message) {
+            return new PurchaseResult(false, message, 0, new ArrayList<>());
+        }
+    }
+    
     public static class PlayerSkin {
         public int id;
         public String name;
@@ -0,0 +1,62 @@
+package dao;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Equipped skin folder of each online player.
+ * Filled when a player joins, updated when they equip a skin and evicted when they leave,
+ * so skin sync on join and teleport reads memory instead of joining player_skins and skins.
+ */
+public class SkinCache {
+
+    private final Map<String, String> equipped = new ConcurrentHashMap<>();
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+
+    /**
+     * @return the cached skin folder, or null on a miss
+     */
+    public String get(String username) {
+        String folder = equipped.get(username);
+        if (folder != null) {
+            hits.increment();
+        } else {
+            misses.increment();
+        }
+        return folder;
+    }
+
+    public void put(String username, String skinFolder) {
+        if (skinFolder != null) {
+            equipped.put(username, skinFolder);
+        }
+    }
+
+    public void evict(String username) {
+        equipped.remove(username);
+    }
+
+    /**
+     * @return hits over all lookups, 1.0 before the first lookup
+     */
+    public double hitRatio() {
+        long h = hits.sum();
+        long total = h + misses.sum();
+        return total == 0 ? 1.0 : (double) h / total;
+    }
+
+    /**
+     * @return hits, misses, cached players and the hit ratio in percent
+     */
+    public Map<String, Long> metrics() {
+        Map<String, Long> metrics = new LinkedHashMap<>();
+        metrics.put("hits", hits.sum());
+        metrics.put("misses", misses.sum());
+        metrics.put("size", (long) equipped.size());
+        metrics.put("hitRatioPercent", Math.round(hitRatio() * 100));
+        return metrics;
+    }
+}
@@ -0,0 +1,107 @@
+package dao;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.Function;
+import java.util.zip.CRC32;
+
+/**
+ * In-memory copy of the active skins, held as an immutable snapshot.
+ * A catalog change builds a new snapshot and swaps it in one step, so readers
+ * always see one whole version and never touch the database.
+ * The version is a checksum of the catalog contents: it stays the same across restarts
+ * while the skins do not change, so a client's cached version stays valid.
+ */
+public class SkinCatalog {
+
+    /**
+     * Immutable list of skins of one version of the catalog.
+     * The skins must not be modified once in a snapshot.
+     */
+    public static final class Snapshot {
+        private final long version;
+        private final List<ShopDAO.SkinItem> skins;
+        private volatile String frame;
+
+        Snapshot(long version, List<ShopDAO.SkinItem> skins) {
+            this.version = version;
+            this.skins = Collections.unmodifiableList(skins);
+        }
+
+        public long getVersion() {
+            return version;
+        }
+
+        public List<ShopDAO.SkinItem> getSkins() {
+            return skins;
+        }
+
+        /**
+         * @return the skin with this id, or null if it is not in the catalog
+         */
+        public ShopDAO.SkinItem find(int skinId) {
+            for (ShopDAO.SkinItem skin : skins) {
+                if (skin.id == skinId) return skin;
+            }
+            return null;
+        }
+
+        /**
+         * Get the network frame for this version, encoding it on first use only
+         * @param encoder turns the skins into the packet sent to clients
+         */
+        public String frame(Function<List<ShopDAO.SkinItem>, String> encoder) {
+            String f = frame;
+            if (f == null) {
+                f = encoder.apply(skins);
+                frame = f;
+            }
+            return f;
+        }
+    }
+
+    private final AtomicReference<Snapshot> current = new AtomicReference<>(new Snapshot(0, new ArrayList<>()));
+
+    /**
+     * @return the current snapshot, empty until the catalog is first loaded
+     */
+    public Snapshot get() {
+        return current.get();
+    }
+
+    /**
+     * @return true once a non-empty catalog has been loaded
+     */
+    public boolean isLoaded() {
+        return !current.get().skins.isEmpty();
+    }
+
+    /**
+     * Swap in a new catalog
+     * @param skins the active skins, in display order
+     * @return true if the contents changed and a new version was published
+     */
+    public boolean replace(List<ShopDAO.SkinItem> skins) {
+        long version = versionOf(skins);
+        Snapshot next = new Snapshot(version, new ArrayList<>(skins));
+        while (true) {
+            Snapshot prev = current.get();
+            if (prev.version == version) return false;
+            if (current.compareAndSet(prev, next)) return true;
+        }
+    }
+
+    private static long versionOf(List<ShopDAO.SkinItem> skins) {
+        if (skins.isEmpty()) return 0;
+        CRC32 crc = new CRC32();
+        for (ShopDAO.SkinItem skin : skins) {
+            crc.update(skin.toProtocolString().getBytes(StandardCharsets.UTF_8));
+            crc.update('\n');
+        }
+        // Never 0, which marks the empty catalog
+        return crc.getValue() + 1;
+    }
+}
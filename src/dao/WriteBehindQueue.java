@@ -0,0 +1,484 @@
+package dao;
+
+import databaseConnect.DatabaseConnection;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.sql.SQLNonTransientConnectionException;
+import java.sql.SQLRecoverableException;
+import java.sql.SQLTransientConnectionException;
+import java.sql.SQLTransientException;
+import java.sql.Timestamp;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.function.IntFunction;
+import java.util.function.ToIntFunction;
+
+/**
+ * Write-behind queue for points, coins and game history.
+ *
+ * Mutations are queued in memory and written later in one transaction:
+ * point and coin deltas are summed per username into a single UPDATE each,
+ * game results and their player_stats upserts are sent as JDBC batches.
+ * Rows of a failed batch are retried one by one; rows that keep failing are dropped
+ * to a dead-letter file instead of blocking the queue.
+ * A flush runs every FLUSH_INTERVAL_MS, or sooner once BATCH_SIZE mutations are waiting,
+ * and a final flush runs on shutdown.
+ * Balances read while deltas are still queued include those deltas, see {@link #readCoins}.
+ */
+public class WriteBehindQueue {
+
+    // Flush once this many mutations are waiting, -Dminiisland.writeBehind.batchSize=200
+    private static final int BATCH_SIZE = Integer.getInteger("miniisland.writeBehind.batchSize", 200);
+    // Flush at least this often, -Dminiisland.writeBehind.flushMs=1000
+    private static final long FLUSH_INTERVAL_MS = Long.getLong("miniisland.writeBehind.flushMs", 1000);
+    // Give up on a row after this many transient failures, -Dminiisland.writeBehind.maxAttempts=5
+    private static final int MAX_ATTEMPTS = Integer.getInteger("miniisland.writeBehind.maxAttempts", 5);
+    // Rows that cannot be written are appended here, -Dminiisland.writeBehind.deadLetterFile=...
+    private static final String DEAD_LETTER_FILE =
+            System.getProperty("miniisland.writeBehind.deadLetterFile", "write-behind-dead-letter.log");
+
+    private static final WriteBehindQueue INSTANCE = new WriteBehindQueue();
+
+    /**
+     * One finished game, inserted into game_history
+     */
+    public static final class GameRecord {
+        final String username;
+        final String gameMode;
+        final int score;
+        final int kills;
+        final int coinsCollected;
+        final boolean won;
+        final int pointsEarned;
+        final Timestamp playedAt;
+        int attempts;
+
+        public GameRecord(String username, String gameMode, int score, int kills,
+                          int coinsCollected, boolean won, int pointsEarned) {
+            this.username = username;
+            this.gameMode = gameMode;
+            this.score = score;
+            this.kills = kills;
+            this.coinsCollected = coinsCollected;
+            this.won = won;
+            this.pointsEarned = pointsEarned;
+            this.playedAt = new Timestamp(System.currentTimeMillis());
+        }
+    }
+
+    /**
+     * Point and coin deltas of one player, summed until the next flush
+     */
+    private static final class Delta {
+        int points;
+        int coins;
+        int attempts;
+    }
+
+    private final GameHistoryDAO historyDAO = new GameHistoryDAO();
+    private final Object queueLock = new Object();
+    // Readers of balances hold the read lock, a flush commits under the write lock
+    private final ReentrantReadWriteLock commitLock = new ReentrantReadWriteLock();
+    private final ScheduledExecutorService flusher;
+    private final AtomicBoolean flushRequested = new AtomicBoolean(false);
+
+    private Map<String, Delta> pending = new LinkedHashMap<>();
+    private List<GameRecord> pendingGames = new ArrayList<>();
+    private volatile Map<String, Delta> flushing = new HashMap<>();
+
+    // Metrics
+    private final AtomicLong flushCount = new AtomicLong();
+    private final AtomicLong failedFlushCount = new AtomicLong();
+    private final AtomicLong totalFlushMillis = new AtomicLong();
+    private final AtomicLong maxFlushMillis = new AtomicLong();
+    private final AtomicLong deadLetterCount = new AtomicLong();
+    private volatile long lastFlushMillis = 0;
+
+    private WriteBehindQueue() {
+        flusher = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread thread = new Thread(r, "write-behind");
+            thread.setDaemon(true);
+            return thread;
+        });
+        flusher.scheduleWithFixedDelay(this::flushSafely, FLUSH_INTERVAL_MS, FLUSH_INTERVAL_MS, TimeUnit.MILLISECONDS);
+        // Last flush when the JVM exits without stopServer
+        Runtime.getRuntime().addShutdownHook(new Thread(this::flush, "write-behind-shutdown"));
+    }
+
+    /**
+     * @return the queue shared by all DAOs
+     */
+    public static WriteBehindQueue get() {
+        return INSTANCE;
+    }
+
+    /**
+     * Queue a point change
+     * @param username the player
+     * @param delta points to add, may be negative
+     */
+    public void addPoints(String username, int delta) {
+        synchronized (queueLock) {
+            pending.computeIfAbsent(username, u -> new Delta()).points += delta;
+        }
+        requestFlushIfFull();
+    }
+
+    /**
+     * Queue a coin change
+     * @param username the player
+     * @param delta coins to add, may be negative
+     */
+    public void addCoins(String username, int delta) {
+        synchronized (queueLock) {
+            pending.computeIfAbsent(username, u -> new Delta()).coins += delta;
+        }
+        requestFlushIfFull();
+    }
+
+    /**
+     * Queue a game result
+     */
+    public void recordGame(GameRecord record) {
+        synchronized (queueLock) {
+            pendingGames.add(record);
+        }
+        requestFlushIfFull();
+    }
+
+    /**
+     * Read a coin balance from the database and add the coins not written yet
+     * @param username the player
+     * @param stored reads the stored balance
+     * @return the balance the player will have once the queue is flushed
+     */
+    public int readCoins(String username, ToIntFunction<String> stored) {
+        return withQueuedCoins(username, queued -> stored.applyAsInt(username) + queued);
+    }
+
+    /**
+     * Run database work on one player's row while no flush can commit,
+     * so the stored balance and the coins not written yet are counted exactly once.
+     * @param username the player
+     * @param work receives the coins queued or being flushed for the player
+     * @return what the work returns
+     */
+    public <T> T withQueuedCoins(String username, IntFunction<T> work) {
+        commitLock.readLock().lock();
+        try {
+            int coins = 0;
+            Delta inFlight = flushing.get(username);
+            if (inFlight != null) coins += inFlight.coins;
+            synchronized (queueLock) {
+                Delta queued = pending.get(username);
+                if (queued != null) coins += queued.coins;
+            }
+            return work.apply(coins);
+        } finally {
+            commitLock.readLock().unlock();
+        }
+    }
+
+    /**
+     * @return number of mutations waiting: one per player with deltas, one per game result
+     */
+    public int queueDepth() {
+        synchronized (queueLock) {
+            return pending.size() + pendingGames.size();
+        }
+    }
+
+    /**
+     * @return queue depth and flush counters and latencies in milliseconds
+     */
+    public Map<String, Long> metrics() {
+        Map<String, Long> metrics = new LinkedHashMap<>();
+        long flushes = flushCount.get();
+        metrics.put("queueDepth", (long) queueDepth());
+        metrics.put("flushes", flushes);
+        metrics.put("failedFlushes", failedFlushCount.get());
+        metrics.put("deadLetters", deadLetterCount.get());
+        metrics.put("lastFlushMillis", lastFlushMillis);
+        metrics.put("avgFlushMillis", flushes == 0 ? 0 : totalFlushMillis.get() / flushes);
+        metrics.put("maxFlushMillis", maxFlushMillis.get());
+        return metrics;
+    }
+
+    /**
+     * Write everything queued so far, blocking until it is committed
+     * @return true if the queue was empty or the write succeeded
+     */
+    public synchronized boolean flush() {
+        Map<String, Delta> deltas;
+        List<GameRecord> games;
+        // Swapped under the commit lock so a balance reader sees the deltas in exactly one place
+        commitLock.writeLock().lock();
+        try {
+            synchronized (queueLock) {
+                if (pending.isEmpty() && pendingGames.isEmpty()) return true;
+                deltas = pending;
+                games = pendingGames;
+                pending = new LinkedHashMap<>();
+                pendingGames = new ArrayList<>();
+                flushing = deltas;
+            }
+        } finally {
+            commitLock.writeLock().unlock();
+        }
+
+        long start = System.nanoTime();
+        boolean ok = write(deltas, games);
+        long millis = (System.nanoTime() - start) / 1_000_000;
+
+        if (ok) {
+            flushCount.incrementAndGet();
+            totalFlushMillis.addAndGet(millis);
+            maxFlushMillis.accumulateAndGet(millis, Math::max);
+            lastFlushMillis = millis;
+        } else {
+            failedFlushCount.incrementAndGet();
+        }
+        return ok;
+    }
+
+    /**
+     * Stop the timer and write what is left
+     */
+    public void shutdown() {
+        flusher.shutdown();
+        flush();
+    }
+
+    /**
+     * Write one batch in a transaction. If the batch fails, each row is retried in its own
+     * transaction so one bad row cannot hold back the rest, see {@link #writeRows}.
+     * Rows not written go back in the queue before the lock is released,
+     * so balance readers never miss their deltas.
+     */
+    private boolean write(Map<String, Delta> deltas, List<GameRecord> games) {
+        Connection conn = DatabaseConnection.getConnection();
+        if (conn == null) {
+            commitLock.writeLock().lock();
+            try {
+                requeue(deltas, games);
+            } finally {
+                commitLock.writeLock().unlock();
+            }
+            return false;
+        }
+
+        commitLock.writeLock().lock();
+        try {
+            conn.setAutoCommit(false);
+            try {
+                writeBatch(conn, deltas, games);
+                conn.commit();
+                flushing = new HashMap<>();
+                return true;
+            } catch (SQLException e) {
+                e.printStackTrace();
+                rollback(conn);
+                if (isConnectionError(e)) {
+                    requeue(deltas, games);
+                    return false;
+                }
+            }
+            return writeRows(conn, deltas, games);
+        } catch (SQLException e) {
+            e.printStackTrace();
+            requeue(deltas, games);
+            return false;
+        } finally {
+            commitLock.writeLock().unlock();
+            try {
+                conn.setAutoCommit(true);
+                conn.close();
+            } catch (SQLException e) {
+                e.printStackTrace();
+            }
+        }
+    }
+
+    /**
+     * Retry a failed batch one row at a time. A row failing on a transient error is requeued
+     * up to MAX_ATTEMPTS times; a row failing on anything else, such as a username too long
+     * for game_history, is dead-lettered at once. Once the connection is lost the remaining
+     * rows are requeued without counting an attempt.
+     * @return true if every row was written
+     */
+    private boolean writeRows(Connection conn, Map<String, Delta> deltas, List<GameRecord> games) {
+        Map<String, Delta> retryDeltas = new LinkedHashMap<>();
+        List<GameRecord> retryGames = new ArrayList<>();
+        boolean connected = true;
+
+        for (Map.Entry<String, Delta> e : deltas.entrySet()) {
+            Delta d = e.getValue();
+            if (connected) {
+                try {
+                    writeBatch(conn, Collections.singletonMap(e.getKey(), d), Collections.emptyList());
+                    conn.commit();
+                    continue;
+                } catch (SQLException ex) {
+                    rollback(conn);
+                    connected = !isConnectionError(ex);
+                    if (connected && (!isTransient(ex) || ++d.attempts >= MAX_ATTEMPTS)) {
+                        deadLetter("points=" + d.points + " coins=" + d.coins + " username=" + e.getKey(), ex);
+                        continue;
+                    }
+                }
+            }
+            retryDeltas.put(e.getKey(), d);
+        }
+
+        for (GameRecord g : games) {
+            if (connected) {
+                try {
+                    writeBatch(conn, Collections.emptyMap(), Collections.singletonList(g));
+                    conn.commit();
+                    continue;
+                } catch (SQLException ex) {
+                    rollback(conn);
+                    connected = !isConnectionError(ex);
+                    if (connected && (!isTransient(ex) || ++g.attempts >= MAX_ATTEMPTS)) {
+                        deadLetter("game=" + g.gameMode + " score=" + g.score + " kills=" + g.kills
+                                + " coins=" + g.coinsCollected + " won=" + g.won + " points=" + g.pointsEarned
+                                + " playedAt=" + g.playedAt + " username=" + g.username, ex);
+                        continue;
+                    }
+                }
+            }
+            retryGames.add(g);
+        }
+
+        requeue(retryDeltas, retryGames);
+        return retryDeltas.isEmpty() && retryGames.isEmpty();
+    }
+
+    private void writeBatch(Connection conn, Map<String, Delta> deltas, List<GameRecord> games) throws SQLException {
+        if (!deltas.isEmpty()) {
+            try (PreparedStatement update = conn.prepareStatement(
+                    "UPDATE users SET points = points + ?, coins = coins + ? WHERE username = ?")) {
+                for (Map.Entry<String, Delta> e : deltas.entrySet()) {
+                    update.setInt(1, e.getValue().points);
+                    update.setInt(2, e.getValue().coins);
+                    update.setString(3, e.getKey());
+                    update.addBatch();
+                }
+                update.executeBatch();
+            }
+        }
+
+        if (!games.isEmpty()) {
+            try (PreparedStatement insert = conn.prepareStatement(
+                    "INSERT INTO game_history (username, game_mode, score, kills, coins_collected, won, points_earned, played_at) " +
+                    "VALUES (?, ?, ?, ?, ?, ?, ?, ?)")) {
+                for (GameRecord g : games) {
+                    insert.setString(1, g.username);
+                    insert.setString(2, g.gameMode);
+                    insert.setInt(3, g.score);
+                    insert.setInt(4, g.kills);
+                    insert.setInt(5, g.coinsCollected);
+                    insert.setBoolean(6, g.won);
+                    insert.setInt(7, g.pointsEarned);
+                    insert.setTimestamp(8, g.playedAt);
+                    insert.addBatch();
+                }
+                insert.executeBatch();
+            }
+
+            historyDAO.updateStats(conn, games);
+        }
+    }
+
+    private static void rollback(Connection conn) {
+        try { conn.rollback(); } catch (SQLException e) { e.printStackTrace(); }
+    }
+
+    // The connection is gone, nothing else will succeed on it
+    private static boolean isConnectionError(SQLException e) {
+        String state = e.getSQLState();
+        return e instanceof SQLRecoverableException
+                || e instanceof SQLNonTransientConnectionException
+                || e instanceof SQLTransientConnectionException
+                || (state != null && state.startsWith("08"));
+    }
+
+    // Deadlocks and lock timeouts, worth retrying as is
+    private static boolean isTransient(SQLException e) {
+        String state = e.getSQLState();
+        return e instanceof SQLTransientException || (state != null && state.startsWith("40"));
+    }
+
+    /**
+     * Drop a row that cannot be written, keeping it in the dead-letter file for a manual replay
+     */
+    private void deadLetter(String row, SQLException cause) {
+        deadLetterCount.incrementAndGet();
+        String line = new Timestamp(System.currentTimeMillis()) + " [" + cause.getSQLState() + "] "
+                + cause.getMessage() + " | " + row + System.lineSeparator();
+        System.err.println("Write-behind dead letter: " + line.trim());
+        try {
+            Files.write(Paths.get(DEAD_LETTER_FILE), line.getBytes(StandardCharsets.UTF_8),
+                    StandardOpenOption.CREATE, StandardOpenOption.APPEND);
+        } catch (IOException e) {
+            e.printStackTrace();
+        }
+    }
+
+    /**
+     * Put a failed batch back in front of what was queued meanwhile, to be retried on the next flush
+     */
+    private void requeue(Map<String, Delta> deltas, List<GameRecord> games) {
+        flushing = new HashMap<>();
+        synchronized (queueLock) {
+            for (Map.Entry<String, Delta> e : pending.entrySet()) {
+                Delta d = deltas.computeIfAbsent(e.getKey(), u -> new Delta());
+                d.points += e.getValue().points;
+                d.coins += e.getValue().coins;
+            }
+            games.addAll(pendingGames);
+            pending = deltas;
+            pendingGames = games;
+        }
+    }
+
+    private void requestFlushIfFull() {
+        if (queueDepth() >= BATCH_SIZE && flushRequested.compareAndSet(false, true)) {
+            try {
+                flusher.execute(() -> {
+                    flushRequested.set(false);
+                    flushSafely();
+                });
+            } catch (java.util.concurrent.RejectedExecutionException e) {
+                // Shutting down, the final flush picks it up
+                flushRequested.set(false);
+            }
+        }
+    }
+
+    private void flushSafely() {
+        try {
+            flush();
+        } catch (Exception e) {
+            System.err.println("Write-behind flush failed: " + e.getMessage());
+            e.printStackTrace();
+        }
+    }
+}
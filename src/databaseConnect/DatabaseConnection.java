@@ -6,6 +6,9 @@ import org.apache.commons.dbcp2.BasicDataSource;
 
 public class DatabaseConnection {
 
+    // Maximum number of pooled connections
+    public static final int MAX_CONNECTIONS = 20;
+
     private static BasicDataSource dataSource;
 
     static {
@@ -15,7 +18,7 @@ public class DatabaseConnection {
         dataSource.setUsername("root");
         dataSource.setPassword("secret");
         dataSource.setInitialSize(5); // Initial number of connections
-        dataSource.setMaxTotal(20);   // Maximum number of connections
+        dataSource.setMaxTotal(MAX_CONNECTIONS);   // Maximum number of connections
     }
 
     public static Connection getConnection(){
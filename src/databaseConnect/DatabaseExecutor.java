@@ -0,0 +1,54 @@
+package databaseConnect;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Supplier;
+
+/**
+ * Bounded worker pool for blocking work: JDBC calls and password hashing.
+ * Network and game loop threads hand their blocking calls to this pool and
+ * continue with the returned CompletableFuture, so they never wait on MySQL or BCrypt.
+ * The pool is no larger than the connection pool, so workers never queue on DBCP.
+ */
+public class DatabaseExecutor {
+
+    private static final int THREADS = Math.min(DatabaseConnection.MAX_CONNECTIONS,
+            Math.max(4, Runtime.getRuntime().availableProcessors() * 2));
+
+    private static final ExecutorService executor;
+
+    static {
+        AtomicInteger counter = new AtomicInteger();
+        executor = new ThreadPoolExecutor(THREADS, THREADS, 60, TimeUnit.SECONDS,
+                new LinkedBlockingQueue<>(), r -> {
+                    Thread thread = new Thread(r, "db-worker-" + counter.incrementAndGet());
+                    thread.setDaemon(true);
+                    return thread;
+                });
+    }
+
+    private DatabaseExecutor() {
+    }
+
+    /**
+     * Run a blocking call on the pool
+     * @param call the call
+     * @return a future completed with the call's result
+     */
+    public static <T> CompletableFuture<T> supply(Supplier<T> call) {
+        return CompletableFuture.supplyAsync(call, executor);
+    }
+
+    /**
+     * Run a blocking task on the pool
+     * @param task the task
+     * @return a future completed when the task is done
+     */
+    public static CompletableFuture<Void> run(Runnable task) {
+        return CompletableFuture.runAsync(task, executor);
+    }
+}
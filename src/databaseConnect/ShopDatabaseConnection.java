@@ -0,0 +1,35 @@
+package databaseConnect;
+
+import java.sql.Connection;
+import java.sql.SQLException;
+import org.apache.commons.dbcp2.BasicDataSource;
+
+/**
+ * Connection pool for the legacy item shop database (game_shop).
+ * Kept small, the item shop only sees the occasional list or purchase.
+ */
+public class ShopDatabaseConnection {
+
+    // Maximum number of pooled connections
+    public static final int MAX_CONNECTIONS = 4;
+
+    private static BasicDataSource dataSource;
+
+    static {
+        dataSource = new BasicDataSource();
+        dataSource.setUrl("jdbc:mysql://localhost:3306/game_shop");
+        dataSource.setUsername("root");
+        dataSource.setPassword("password");
+        dataSource.setInitialSize(1); // Initial number of connections
+        dataSource.setMaxTotal(MAX_CONNECTIONS);   // Maximum number of connections
+    }
+
+    public static Connection getConnection(){
+        try {
+            return dataSource.getConnection();
+        } catch (SQLException e) {
+            e.printStackTrace();
+        }
+        return null;
+    }
+}
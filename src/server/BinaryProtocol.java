@@ -0,0 +1,279 @@
+package server;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+
+/**
+ * Compact binary encoding for the high-rate packets of {@link Protocol}.
+ * A client opts in per connection by opening the socket with {@code ?codec=binary};
+ * every other packet keeps using text frames.
+ *
+ * Frame layout: one opcode byte, then the fields of the text packet after its command name.
+ * Generic packets (Update, Shot, BulletUpdate, MonsterUpdate, HuntTime, MazeTime) are
+ * written as a varint field count, a varint bit mask marking which fields are strings,
+ * then each field as a zigzag varint or as a varint length followed by UTF-8 bytes.
+ * MonsterSnapshot is written as a varint entry count followed by four zigzag varints
+ * (id, x, y, health) per monster.
+ *
+ * Decoding yields the exact text packet, so handlers are shared between both codecs.
+ */
+public final class BinaryProtocol {
+
+    public static final byte UPDATE = 1;
+    public static final byte SHOT = 2;
+    public static final byte BULLET_UPDATE = 3;
+    public static final byte MONSTER_UPDATE = 4;
+    public static final byte HUNT_TIME = 5;
+    public static final byte MAZE_TIME = 6;
+    public static final byte MONSTER_SNAPSHOT = 7;
+
+    private static final String[] COMMANDS = {
+            null, "Update", "Shot", "BulletUpdate", "MonsterUpdate", "HuntTime", "MazeTime", "MonsterSnapshot"
+    };
+
+    // Fields beyond this are not representable in the string mask
+    private static final int MAX_FIELDS = 63;
+
+    private BinaryProtocol() {
+    }
+
+    /**
+     * Find the opcode of a text packet
+     * @param message the text packet
+     * @return the opcode, or 0 if the packet has no binary form
+     */
+    public static byte opcodeOf(String message) {
+        int comma = message.indexOf(',');
+        if (comma < 0) return 0;
+        for (int op = 1; op < COMMANDS.length; op++) {
+            String command = COMMANDS[op];
+            if (command.length() == comma && message.startsWith(command)) {
+                return (byte) op;
+            }
+        }
+        return 0;
+    }
+
+    /**
+     * Encode a text packet
+     * @param message the text packet
+     * @return the binary frame, or null if the packet has no binary form
+     */
+    public static ByteBuffer encode(String message) {
+        byte op = opcodeOf(message);
+        if (op == 0) return null;
+
+        Writer out = new Writer(message.length());
+        out.writeByte(op);
+        int start = COMMANDS[op].length() + 1;
+        boolean ok = op == MONSTER_SNAPSHOT
+                ? writeSnapshot(out, message, start)
+                : writeFields(out, message, start);
+        return ok ? out.toByteBuffer() : null;
+    }
+
+    /**
+     * Decode a binary frame back into its text packet
+     * @param frame the binary frame
+     * @return the text packet
+     * @throws IllegalArgumentException if the frame is malformed
+     */
+    public static String decode(ByteBuffer frame) {
+        try {
+            int op = frame.get();
+            if (op <= 0 || op >= COMMANDS.length) {
+                throw new IllegalArgumentException("Unknown opcode " + op);
+            }
+            StringBuilder sb = new StringBuilder(COMMANDS[op]);
+            if (op == MONSTER_SNAPSHOT) {
+                int count = readVarInt(frame);
+                for (int i = 0; i < count; i++) {
+                    sb.append(',').append(readZigZag(frame))
+                      .append('|').append(readZigZag(frame))
+                      .append('|').append(readZigZag(frame))
+                      .append('|').append(readZigZag(frame));
+                }
+            } else {
+                int count = readVarInt(frame);
+                if (count > MAX_FIELDS) {
+                    throw new IllegalArgumentException("Too many fields: " + count);
+                }
+                long stringMask = readVarLong(frame);
+                for (int i = 0; i < count; i++) {
+                    sb.append(',');
+                    if ((stringMask & (1L << i)) != 0) {
+                        int len = readVarInt(frame);
+                        if (len > frame.remaining()) {
+                            throw new IllegalArgumentException("Truncated string field");
+                        }
+                        byte[] bytes = new byte[len];
+                        frame.get(bytes);
+                        sb.append(new String(bytes, StandardCharsets.UTF_8));
+                    } else {
+                        sb.append(readZigZag(frame));
+                    }
+                }
+            }
+            return sb.toString();
+        } catch (java.nio.BufferUnderflowException e) {
+            throw new IllegalArgumentException("Truncated frame", e);
+        }
+    }
+
+    private static boolean writeFields(Writer out, String message, int start) {
+        // First pass: count fields and classify them
+        int count = 0;
+        long stringMask = 0;
+        int pos = start;
+        while (true) {
+            int end = message.indexOf(',', pos);
+            if (end < 0) end = message.length();
+            if (count == MAX_FIELDS) return false;
+            if (!isCanonicalInt(message, pos, end)) {
+                stringMask |= 1L << count;
+            }
+            count++;
+            if (end == message.length()) break;
+            pos = end + 1;
+        }
+
+        out.writeVarLong(count);
+        out.writeVarLong(stringMask);
+        pos = start;
+        for (int i = 0; i < count; i++) {
+            int end = message.indexOf(',', pos);
+            if (end < 0) end = message.length();
+            if ((stringMask & (1L << i)) != 0) {
+                byte[] bytes = message.substring(pos, end).getBytes(StandardCharsets.UTF_8);
+                out.writeVarLong(bytes.length);
+                out.writeBytes(bytes);
+            } else {
+                out.writeZigZag(parseInt(message, pos, end));
+            }
+            pos = end + 1;
+        }
+        return true;
+    }
+
+    private static boolean writeSnapshot(Writer out, String message, int start) {
+        int count = 0;
+        for (int i = start - 1; i < message.length(); i++) {
+            if (message.charAt(i) == ',') count++;
+        }
+        out.writeVarLong(count);
+        int pos = start;
+        for (int entry = 0; entry < count; entry++) {
+            for (int field = 0; field < 4; field++) {
+                char sep = field < 3 ? '|' : ',';
+                int end = message.indexOf(sep, pos);
+                if (end < 0) end = message.length();
+                if (!isCanonicalInt(message, pos, end)) return false;
+                out.writeZigZag(parseInt(message, pos, end));
+                pos = end + 1;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * True if the region is an int whose decimal form round-trips exactly,
+     * so decoding reproduces the original text.
+     */
+    private static boolean isCanonicalInt(String s, int start, int end) {
+        int len = end - start;
+        if (len <= 0 || len > 11) return false;
+        int i = start;
+        if (s.charAt(i) == '-') {
+            if (len == 1 || s.charAt(i + 1) == '0') return false;
+            i++;
+        } else if (s.charAt(i) == '0' && len > 1) {
+            return false;
+        }
+        long value = 0;
+        for (; i < end; i++) {
+            char c = s.charAt(i);
+            if (c < '0' || c > '9') return false;
+            value = value * 10 + (c - '0');
+        }
+        if (s.charAt(start) == '-') value = -value;
+        return value >= Integer.MIN_VALUE && value <= Integer.MAX_VALUE;
+    }
+
+    private static int parseInt(String s, int start, int end) {
+        boolean negative = s.charAt(start) == '-';
+        long value = 0;
+        for (int i = negative ? start + 1 : start; i < end; i++) {
+            value = value * 10 + (s.charAt(i) - '0');
+        }
+        return (int) (negative ? -value : value);
+    }
+
+    private static int readVarInt(ByteBuffer in) {
+        long value = readVarLong(in);
+        if (value > Integer.MAX_VALUE) {
+            throw new IllegalArgumentException("Varint too large");
+        }
+        return (int) value;
+    }
+
+    private static long readVarLong(ByteBuffer in) {
+        long value = 0;
+        for (int shift = 0; shift < 64; shift += 7) {
+            byte b = in.get();
+            value |= (long) (b & 0x7F) << shift;
+            if ((b & 0x80) == 0) return value;
+        }
+        throw new IllegalArgumentException("Malformed varint");
+    }
+
+    private static int readZigZag(ByteBuffer in) {
+        int raw = (int) readVarLong(in);
+        return (raw >>> 1) ^ -(raw & 1);
+    }
+
+    /**
+     * Minimal growable byte writer for building one frame
+     */
+    private static final class Writer {
+        private byte[] buf;
+        private int size;
+
+        Writer(int capacity) {
+            buf = new byte[Math.max(16, capacity)];
+        }
+
+        void writeByte(int b) {
+            ensure(1);
+            buf[size++] = (byte) b;
+        }
+
+        void writeBytes(byte[] bytes) {
+            ensure(bytes.length);
+            System.arraycopy(bytes, 0, buf, size, bytes.length);
+            size += bytes.length;
+        }
+
+        void writeVarLong(long value) {
+            while ((value & ~0x7FL) != 0) {
+                writeByte((int) ((value & 0x7F) | 0x80));
+                value >>>= 7;
+            }
+            writeByte((int) value);
+        }
+
+        void writeZigZag(int value) {
+            writeVarLong(((value << 1) ^ (value >> 31)) & 0xFFFFFFFFL);
+        }
+
+        ByteBuffer toByteBuffer() {
+            return ByteBuffer.wrap(Arrays.copyOf(buf, size));
+        }
+
+        private void ensure(int extra) {
+            if (size + extra > buf.length) {
+                buf = Arrays.copyOf(buf, Math.max(buf.length * 2, size + extra));
+            }
+        }
+    }
+}
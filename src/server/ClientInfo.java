@@ -1,5 +1,6 @@
 package server;
 
+import dao.PlayerSession;
 import org.java_websocket.WebSocket;
 
 public class ClientInfo
@@ -9,6 +10,7 @@ public class ClientInfo
     String username;
     String map;
     boolean isAlive=true;
+    PlayerSession session; // Account state loaded at Hello
 
     public ClientInfo(WebSocket webSocket,String username,int posX,int posY,int direction,String map)
     {
@@ -69,4 +71,12 @@ public class ClientInfo
     public void setMap(String map) {
         this.map = map;
     }
+
+    public PlayerSession getSession() {
+        return session;
+    }
+
+    public void setSession(PlayerSession session) {
+        this.session = session;
+    }
 }
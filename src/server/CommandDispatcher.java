@@ -0,0 +1,166 @@
+package server;
+
+import org.java_websocket.WebSocket;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Routes inbound packets to their handlers.
+ *
+ * Most packets start with a command token followed by a comma ("Update,bob,10,20,1").
+ * Those are looked up in a small open-addressing table keyed by the token, hashed
+ * straight from the packet so no substring is created, which keeps dispatch cost
+ * constant however many commands are registered.
+ * A few legacy packets glue their payload to the command ("Hellobob", "Exit Auth");
+ * they are matched by prefix, longest prefix first, so "Exit Auth" is never shadowed by "Exit".
+ */
+public class CommandDispatcher {
+
+    /**
+     * Handler for one command
+     */
+    @FunctionalInterface
+    public interface CommandHandler {
+        void handle(WebSocket conn, String sentence);
+    }
+
+    private static final class Command {
+        final String name;
+        final int hash;
+        final CommandHandler handler;
+        final LongAdder count = new LongAdder();
+
+        Command(String name, CommandHandler handler) {
+            this.name = name;
+            this.hash = name.hashCode();
+            this.handler = handler;
+        }
+    }
+
+    private Command[] table = new Command[64];
+    private int tokenCount = 0;
+    private final List<Command> prefixCommands = new ArrayList<>();
+    private final List<Command> allCommands = new ArrayList<>();
+    private final LongAdder unknown = new LongAdder();
+
+    /**
+     * Register a command sent as "Name,field,field..."
+     * @param name the command token before the first comma
+     * @param handler the handler for the command
+     */
+    public synchronized void register(String name, CommandHandler handler) {
+        Command command = new Command(name, handler);
+        if ((tokenCount + 1) * 2 > table.length) {
+            resize();
+        }
+        insert(table, command);
+        tokenCount++;
+        // Also reachable by prefix, like the old startsWith chain, for packets without a comma
+        addPrefix(command);
+    }
+
+    /**
+     * Register a command whose payload directly follows the name, e.g. "Hello" + username
+     * @param prefix the command prefix
+     * @param handler the handler for the command
+     */
+    public synchronized void registerPrefix(String prefix, CommandHandler handler) {
+        addPrefix(new Command(prefix, handler));
+    }
+
+    /**
+     * Dispatch a packet to its handler
+     * @param conn the connection the packet came from
+     * @param sentence the packet
+     * @return true if a handler was found
+     */
+    public boolean dispatch(WebSocket conn, String sentence) {
+        Command command = lookupToken(sentence);
+        if (command == null) {
+            command = lookupPrefix(sentence);
+        }
+        if (command == null) {
+            unknown.increment();
+            return false;
+        }
+        command.count.increment();
+        command.handler.handle(conn, sentence);
+        return true;
+    }
+
+    /**
+     * @return number of packets dispatched per command, plus "unknown" for unmatched packets
+     */
+    public Map<String, Long> counters() {
+        Map<String, Long> counters = new LinkedHashMap<>();
+        for (Command command : allCommands) {
+            counters.merge(command.name, command.count.sum(), Long::sum);
+        }
+        counters.put("unknown", unknown.sum());
+        return counters;
+    }
+
+    private Command lookupToken(String sentence) {
+        int end = sentence.indexOf(',');
+        if (end < 0) return null;
+
+        // Same hash as String.hashCode() of the token, computed in place
+        int hash = 0;
+        for (int i = 0; i < end; i++) {
+            hash = 31 * hash + sentence.charAt(i);
+        }
+        Command[] t = table;
+        int mask = t.length - 1;
+        for (int i = spread(hash) & mask; t[i] != null; i = (i + 1) & mask) {
+            Command command = t[i];
+            if (command.hash == hash && command.name.length() == end
+                    && sentence.regionMatches(0, command.name, 0, end)) {
+                return command;
+            }
+        }
+        return null;
+    }
+
+    private Command lookupPrefix(String sentence) {
+        for (Command command : prefixCommands) {
+            if (sentence.startsWith(command.name)) {
+                return command;
+            }
+        }
+        return null;
+    }
+
+    private void addPrefix(Command command) {
+        allCommands.add(command);
+        prefixCommands.add(command);
+        prefixCommands.sort(Comparator.comparingInt((Command c) -> c.name.length()).reversed());
+    }
+
+    private void resize() {
+        Command[] bigger = new Command[table.length * 2];
+        for (Command command : table) {
+            if (command != null) {
+                insert(bigger, command);
+            }
+        }
+        table = bigger;
+    }
+
+    private static void insert(Command[] t, Command command) {
+        int mask = t.length - 1;
+        int i = spread(command.hash) & mask;
+        while (t[i] != null) {
+            i = (i + 1) & mask;
+        }
+        t[i] = command;
+    }
+
+    private static int spread(int hash) {
+        return hash ^ (hash >>> 16);
+    }
+}
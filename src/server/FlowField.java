@@ -0,0 +1,145 @@
+package server;
+
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Shared pathing for hunt monsters over the 48 px tiles of the playable area.
+ * Each tick a multi-source BFS runs outwards from every player's tile, giving each tile
+ * its step count to the nearest player and the neighbour that leads there.
+ * Monsters then read their next step from their tile, so pathing costs one pass over
+ * the tiles per tick whatever the number of monsters.
+ * Blocked tiles are never entered; none are blocked until {@link #setBlocked} is called.
+ * Not thread safe: owned by the hunt game loop.
+ */
+public class FlowField {
+
+    public static final int TILE = 48;
+    public static final int UNREACHABLE = Integer.MAX_VALUE;
+
+    // Neighbour offsets: 4 straight, then 4 diagonal
+    private static final int[] NX = {0, 0, -1, 1, -1, 1, -1, 1};
+    private static final int[] NY = {1, -1, 0, 0, -1, -1, 1, 1};
+
+    private final int origin;
+    private final int cols;
+    private final int rows;
+    private final boolean[] blocked;
+    private final int[] distance;
+    private final byte[] stepX;
+    private final byte[] stepY;
+    private final int[] queue;
+
+    /**
+     * @param min lowest pixel coordinate of the area, on both axes
+     * @param max highest pixel coordinate of the area, on both axes
+     */
+    public FlowField(int min, int max) {
+        this.origin = min;
+        this.cols = (max - min) / TILE;
+        this.rows = cols;
+        int tiles = cols * rows;
+        this.blocked = new boolean[tiles];
+        this.distance = new int[tiles];
+        this.stepX = new byte[tiles];
+        this.stepY = new byte[tiles];
+        this.queue = new int[tiles];
+        Arrays.fill(distance, UNREACHABLE);
+    }
+
+    /**
+     * Mark a tile as a wall or clear it again
+     */
+    public void setBlocked(int tileX, int tileY, boolean wall) {
+        if (tileX < 0 || tileY < 0 || tileX >= cols || tileY >= rows) return;
+        blocked[tileY * cols + tileX] = wall;
+    }
+
+    /**
+     * Rebuild the field towards the given players
+     * @param players living players on the map
+     */
+    public void build(List<ClientInfo> players) {
+        Arrays.fill(distance, UNREACHABLE);
+        int head = 0;
+        int tail = 0;
+
+        for (int i = 0; i < players.size(); i++) {
+            ClientInfo p = players.get(i);
+            int tile = tileOf(p.getX(), p.getY());
+            if (blocked[tile] || distance[tile] == 0) continue;
+            distance[tile] = 0;
+            stepX[tile] = 0;
+            stepY[tile] = 0;
+            queue[tail++] = tile;
+        }
+
+        // Straight moves only, so every step costs the same and BFS gives exact distances
+        while (head < tail) {
+            int tile = queue[head++];
+            int tx = tile % cols;
+            int ty = tile / cols;
+            int next = distance[tile] + 1;
+            for (int d = 0; d < 4; d++) {
+                int nx = tx + NX[d];
+                int ny = ty + NY[d];
+                if (nx < 0 || ny < 0 || nx >= cols || ny >= rows) continue;
+                int n = ny * cols + nx;
+                if (blocked[n] || distance[n] != UNREACHABLE) continue;
+                distance[n] = next;
+                queue[tail++] = n;
+            }
+        }
+
+        // Each reached tile points at its lowest neighbour, diagonals only when both sides are open
+        for (int i = 0; i < tail; i++) {
+            int tile = queue[i];
+            if (distance[tile] == 0) continue;
+            int tx = tile % cols;
+            int ty = tile / cols;
+            int best = distance[tile];
+            int bx = 0;
+            int by = 0;
+            for (int d = 0; d < 8; d++) {
+                int nx = tx + NX[d];
+                int ny = ty + NY[d];
+                if (nx < 0 || ny < 0 || nx >= cols || ny >= rows) continue;
+                int n = ny * cols + nx;
+                if (blocked[n] || distance[n] >= best) continue;
+                if (d >= 4 && (blocked[ty * cols + nx] || blocked[ny * cols + tx])) continue;
+                best = distance[n];
+                bx = NX[d];
+                by = NY[d];
+            }
+            stepX[tile] = (byte) bx;
+            stepY[tile] = (byte) by;
+        }
+    }
+
+    /**
+     * @return tile steps from this position to the nearest player, or {@link #UNREACHABLE}
+     */
+    public int distanceAt(int x, int y) {
+        return distance[tileOf(x, y)];
+    }
+
+    /**
+     * @return horizontal direction of the next step from this position: -1, 0 or 1
+     */
+    public int stepXAt(int x, int y) {
+        return stepX[tileOf(x, y)];
+    }
+
+    /**
+     * @return vertical direction of the next step from this position: -1, 0 or 1
+     */
+    public int stepYAt(int x, int y) {
+        return stepY[tileOf(x, y)];
+    }
+
+    private int tileOf(int x, int y) {
+        int tx = Math.max(0, Math.min((x - origin) / TILE, cols - 1));
+        int ty = Math.max(0, Math.min((y - origin) / TILE, rows - 1));
+        return ty * cols + tx;
+    }
+}
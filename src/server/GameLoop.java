@@ -0,0 +1,71 @@
+package server;
+
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Single-writer loop owning the state of one map.
+ * Inbound packets for the map are queued with {@link #execute(Runnable)} and timers run as
+ * fixed-rate ticks on the same thread, so the map state never needs locking.
+ * Each map gets its own loop, so maps run in parallel on separate cores.
+ */
+public class GameLoop {
+
+    private final String name;
+    private final ScheduledExecutorService executor;
+
+    /**
+     * Creates a loop with its own daemon thread
+     * @param name the map owned by this loop, used for the thread name
+     */
+    public GameLoop(String name) {
+        this.name = name;
+        this.executor = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread thread = new Thread(r, "game-loop-" + name);
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    /**
+     * Queue a task to run on the loop thread
+     * @param task the task
+     */
+    public void execute(Runnable task) {
+        try {
+            executor.execute(() -> runSafely(task));
+        } catch (RejectedExecutionException e) {
+            // Loop stopped, the task is dropped like the rest of the queue
+        }
+    }
+
+    /**
+     * Run a task on the loop thread at a fixed rate
+     * @param tick the task
+     * @param periodMillis the period between ticks
+     * @return the handle used to cancel the ticks
+     */
+    public ScheduledFuture<?> scheduleTick(Runnable tick, long periodMillis) {
+        // An exception would cancel the schedule, so each tick is guarded
+        return executor.scheduleAtFixedRate(() -> runSafely(tick), periodMillis, periodMillis, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Stop the loop, dropping queued tasks and ticks
+     */
+    public void shutdown() {
+        executor.shutdownNow();
+    }
+
+    private void runSafely(Runnable task) {
+        try {
+            task.run();
+        } catch (Exception e) {
+            System.err.println("Error in " + name + " loop: " + e.getMessage());
+            e.printStackTrace();
+        }
+    }
+}
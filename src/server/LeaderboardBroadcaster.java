@@ -0,0 +1,114 @@
+package server;
+
+import service.RankedLeaderboard;
+
+import java.util.List;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.Supplier;
+
+/**
+ * Coalesces leaderboard pushes.
+ * Score changes only mark the leaderboard dirty; a tick every interval pushes it once,
+ * and only if the top list actually changed since the last push.
+ * Clients that opted into diffs get a LeaderboardDiff with just the changed rows,
+ * everyone else gets the full Leaderboard frame.
+ */
+public class LeaderboardBroadcaster {
+
+    /**
+     * Receives the frames of one push
+     */
+    @FunctionalInterface
+    public interface Publisher {
+        /**
+         * @param fullFrame the full Leaderboard frame
+         * @param diffFrame the LeaderboardDiff frame with the changed rows
+         */
+        void publish(String fullFrame, String diffFrame);
+    }
+
+    private final Supplier<RankedLeaderboard.Snapshot> source;
+    private final Protocol protocol;
+    private final Publisher publisher;
+    private final long intervalMillis;
+    private final GameLoop loop = new GameLoop("leaderboard");
+    private final AtomicBoolean dirty = new AtomicBoolean(false);
+    private volatile RankedLeaderboard.Snapshot lastSent;
+    private ScheduledFuture<?> tick;
+
+    /**
+     * @param source the current top list
+     * @param protocol builds the frames
+     * @param publisher sends the frames of a push
+     * @param intervalMillis minimum time between two pushes
+     */
+    public LeaderboardBroadcaster(Supplier<RankedLeaderboard.Snapshot> source, Protocol protocol,
+                                  Publisher publisher, long intervalMillis) {
+        this.source = source;
+        this.protocol = protocol;
+        this.publisher = publisher;
+        this.intervalMillis = intervalMillis;
+        this.lastSent = source.get();
+    }
+
+    public synchronized void start() {
+        if (tick == null) {
+            tick = loop.scheduleTick(this::flush, intervalMillis);
+        }
+    }
+
+    public synchronized void stop() {
+        if (tick != null) {
+            tick.cancel(false);
+            tick = null;
+        }
+        loop.shutdown();
+    }
+
+    /**
+     * Request a push on the next tick. Cheap, safe to call on every score change.
+     */
+    public void markDirty() {
+        dirty.set(true);
+    }
+
+    /**
+     * Get the full frame of the last push, the baseline later diffs apply to.
+     * New clients get this one so the next diff matches what they hold.
+     */
+    public String lastFrame() {
+        return lastSent.frame(protocol::leaderBoardPacket);
+    }
+
+    private void flush() {
+        if (!dirty.getAndSet(false)) return;
+
+        RankedLeaderboard.Snapshot current = source.get();
+        RankedLeaderboard.Snapshot previous = lastSent;
+        if (current.getVersion() == previous.getVersion()) return;
+
+        String diff = diffBody(previous.getTop(), current.getTop());
+        lastSent = current;
+        if (diff.isEmpty() && current.getTop().size() == previous.getTop().size()) {
+            // Points changed outside the top list
+            return;
+        }
+        publisher.publish(current.frame(protocol::leaderBoardPacket),
+                protocol.leaderBoardDiffPacket(current.getTop().size(), diff));
+    }
+
+    /**
+     * Rows of the new list that differ from the old one, as ",rank|name|points..."
+     */
+    private static String diffBody(List<RankedLeaderboard.Entry> before, List<RankedLeaderboard.Entry> after) {
+        StringBuilder sb = new StringBuilder();
+        for (int rank = 0; rank < after.size(); rank++) {
+            RankedLeaderboard.Entry row = after.get(rank);
+            if (rank >= before.size() || !row.equals(before.get(rank))) {
+                sb.append(',').append(rank + 1).append('|').append(row.getUsername()).append('|').append(row.getPoints());
+            }
+        }
+        return sb.toString();
+    }
+}
@@ -0,0 +1,388 @@
+package server;
+
+import java.util.Arrays;
+import java.util.SplittableRandom;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
+
+/**
+ * Server-side state of every hunt monster, kept as parallel primitive arrays.
+ * A monster is a slot in the arrays and its id is slot + 1; the slots of dead monsters
+ * go on a free list and are reused by later spawns.
+ * Living monsters are also kept in a dense list so updates, snapshots and hits
+ * iterate only the living without allocating or boxing.
+ * Not thread safe: owned by the hunt game loop. Large worlds split the AI step over the
+ * common fork-join pool, which is safe because each monster only writes its own slot.
+ */
+public class MonsterWorld {
+
+    // Split the AI step over the fork-join pool from this many monsters, -Dminiisland.hunt.parallelThreshold=2048
+    private static final int PARALLEL_THRESHOLD = Integer.getInteger("miniisland.hunt.parallelThreshold", 2048);
+    // Monsters per fork-join task
+    private static final int CHUNK = 512;
+
+    // Monsters chase the nearest player within this many pixels
+    public static final int VISION_RANGE = 300;
+
+    // Map bounds (playable area for hunt map)
+    public static final int MIN_BOUND = 528;  // Tile 11 * 48
+    public static final int MAX_BOUND = 1824; // Tile 38 * 48
+    private static final int SIZE = 48;       // Monster sprite size
+
+    // Stats by type: 0=SLIME, 1=GOBLIN, 2=ORC, 3=BOSS
+    // Note: speed is pixels per 33ms tick (30 FPS), so multiply by ~30 for approx pixels per second
+    private static final int[] MAX_HEALTH = {30, 50, 100, 300};
+    private static final int[] GOLD_REWARD = {10, 25, 50, 200};
+    private static final int[] SPEED = {3, 4, 2, 2};
+
+    private int[] x;
+    private int[] y;
+    private int[] health;
+    private int[] type;
+    private int[] moveDirection; // 1=down, 2=up, 3=left, 4=right
+    private int[] moveTimer;
+    private int[] moveDuration;
+    private boolean[] dirty;      // Position or health changed since the last broadcast
+
+    private int[] live;           // Slots of living monsters, dense
+    private int[] livePos;        // Index of each slot in live, -1 if dead or unused
+    private int liveCount;
+
+    private int[] free;           // Slots of dead monsters, ready for reuse
+    private int freeCount;
+    private int used;             // Slots handed out so far
+
+    private final SplittableRandom random;
+    private long tickSeed;        // Drawn from random once per update, seeds every monster's idle moves
+
+    /**
+     * @param capacity initial number of slots, grows as needed
+     */
+    public MonsterWorld(int capacity) {
+        this(capacity, new SplittableRandom());
+    }
+
+    /**
+     * @param capacity initial number of slots, grows as needed
+     * @param random source of spawn positions and idle movement
+     */
+    public MonsterWorld(int capacity, SplittableRandom random) {
+        this.random = random;
+        allocate(Math.max(capacity, 1));
+    }
+
+    /**
+     * @return the random source for spawns, also seeding each update
+     */
+    public SplittableRandom random() {
+        return random;
+    }
+
+    /**
+     * Add a monster
+     * @return the id of the new monster
+     */
+    public int spawn(int monsterType, int posX, int posY) {
+        int slot;
+        if (freeCount > 0) {
+            slot = free[--freeCount];
+        } else {
+            if (used == x.length) {
+                grow(x.length * 2);
+            }
+            slot = used++;
+        }
+
+        x[slot] = posX;
+        y[slot] = posY;
+        type[slot] = monsterType;
+        health[slot] = MAX_HEALTH[stats(monsterType)];
+        moveDirection[slot] = random.nextInt(4) + 1;
+        moveTimer[slot] = 0;
+        moveDuration[slot] = random.nextInt(60) + 30; // 1-3 seconds at 30 FPS
+        dirty[slot] = true;
+
+        livePos[slot] = liveCount;
+        live[liveCount++] = slot;
+        return slot + 1;
+    }
+
+    /**
+     * @return the slot of a living monster, or -1 if the id is unknown or dead
+     */
+    public int slotOf(int id) {
+        int slot = id - 1;
+        if (slot < 0 || slot >= used || livePos[slot] < 0) return -1;
+        return slot;
+    }
+
+    /**
+     * Apply damage to a living monster, removing it if it dies.
+     * Its last position and health stay readable until the slot is reused.
+     * @return gold reward if the monster died, 0 otherwise
+     */
+    public int damage(int slot, int amount) {
+        health[slot] -= amount;
+        dirty[slot] = true;
+        if (health[slot] > 0) return 0;
+
+        health[slot] = 0;
+        remove(slot);
+        return GOLD_REWARD[stats(type[slot])];
+    }
+
+    /**
+     * Move every living monster one tick: chase when a player is in range, otherwise wander
+     * @param players living hunt players, indexed for this tick
+     * @param paths flow field towards those players, or null to chase in a straight line
+     * @return number of monsters that changed since the last broadcast
+     */
+    public int update(SpatialGrid players, FlowField paths) {
+        tickSeed = random.nextLong();
+        if (liveCount < PARALLEL_THRESHOLD) {
+            return updateRange(0, liveCount, players, paths);
+        }
+        return ForkJoinPool.commonPool().invoke(new UpdateTask(0, liveCount, players, paths));
+    }
+
+    /**
+     * AI step over a range of the living monsters, forked in halves down to {@link #CHUNK}
+     */
+    @SuppressWarnings("serial") // Never serialized, only run on the fork-join pool
+    private final class UpdateTask extends RecursiveTask<Integer> {
+        private final int from;
+        private final int to;
+        private final SpatialGrid players;
+        private final FlowField paths;
+
+        UpdateTask(int from, int to, SpatialGrid players, FlowField paths) {
+            this.from = from;
+            this.to = to;
+            this.players = players;
+            this.paths = paths;
+        }
+
+        @Override
+        protected Integer compute() {
+            if (to - from <= CHUNK) {
+                return updateRange(from, to, players, paths);
+            }
+            int mid = (from + to) >>> 1;
+            UpdateTask left = new UpdateTask(from, mid, players, paths);
+            left.fork();
+            int right = new UpdateTask(mid, to, players, paths).compute();
+            return left.join() + right;
+        }
+    }
+
+    private int updateRange(int from, int to, SpatialGrid players, FlowField paths) {
+        int changed = 0;
+        for (int i = from; i < to; i++) {
+            int slot = live[i];
+            updateAI(slot, players, paths);
+            if (dirty[slot]) changed++;
+        }
+        return changed;
+    }
+
+    private void updateAI(int slot, SpatialGrid players, FlowField paths) {
+        int oldX = x[slot];
+        int oldY = y[slot];
+        // Random draws depend only on the tick seed and the slot, so the result is the
+        // same whichever thread runs the monster and in whatever order
+        long rng = tickSeed ^ (slot * 0xBF58476D1CE4E5B9L);
+        int speed = SPEED[stats(type[slot])];
+
+        // Find nearest player
+        ClientInfo target = players != null ? players.nearest(oldX, oldY, VISION_RANGE) : null;
+
+        if (target != null) {
+            // Chase logic: follow the flow field, straight at the player once on their tile
+            double dx = target.getX() - oldX;
+            double dy = target.getY() - oldY;
+            if (paths != null) {
+                int steps = paths.distanceAt(oldX, oldY);
+                if (steps != FlowField.UNREACHABLE && steps > 0) {
+                    dx = paths.stepXAt(oldX, oldY);
+                    dy = paths.stepYAt(oldX, oldY);
+                }
+            }
+            double length = Math.sqrt(dx * dx + dy * dy);
+
+            if (length > 0) {
+                // Move towards player
+                x[slot] += (int) (dx / length * speed);
+                y[slot] += (int) (dy / length * speed);
+
+                if (Math.abs(dx) > Math.abs(dy)) {
+                    moveDirection[slot] = dx > 0 ? 4 : 3;
+                } else {
+                    moveDirection[slot] = dy > 0 ? 1 : 2;
+                }
+            }
+        } else {
+            // Idle / Random movement logic
+            if (++moveTimer[slot] >= moveDuration[slot]) {
+                moveTimer[slot] = 0;
+                rng = nextState(rng);
+                moveDirection[slot] = bounded(rng, 4) + 1;
+                rng = nextState(rng);
+                moveDuration[slot] = bounded(rng, 60) + 30; // 1-3 seconds at 30 FPS
+            }
+
+            switch (moveDirection[slot]) {
+                case 1: // Down
+                    y[slot] += speed;
+                    break;
+                case 2: // Up
+                    y[slot] -= speed;
+                    break;
+                case 3: // Left
+                    x[slot] -= speed;
+                    break;
+                case 4: // Right
+                    x[slot] += speed;
+                    break;
+            }
+        }
+
+        // Clamp to map bounds (account for monster size ~48px)
+        int maxPos = MAX_BOUND - SIZE;
+        x[slot] = Math.max(MIN_BOUND, Math.min(x[slot], maxPos));
+        y[slot] = Math.max(MIN_BOUND, Math.min(y[slot], maxPos));
+
+        // Change direction if hitting boundary (only for random move, chase slides along the wall)
+        if (target == null && (x[slot] == MIN_BOUND || x[slot] == maxPos || y[slot] == MIN_BOUND || y[slot] == maxPos)) {
+            rng = nextState(rng);
+            moveDirection[slot] = bounded(rng, 4) + 1;
+        }
+
+        if (x[slot] != oldX || y[slot] != oldY) {
+            dirty[slot] = true;
+        }
+    }
+
+    /**
+     * @return number of living monsters
+     */
+    public int count() {
+        return liveCount;
+    }
+
+    /**
+     * @param index 0 until {@link #count()}
+     * @return the slot of the index-th living monster
+     */
+    public int slotAt(int index) {
+        return live[index];
+    }
+
+    public int id(int slot) {
+        return slot + 1;
+    }
+
+    public int x(int slot) {
+        return x[slot];
+    }
+
+    public int y(int slot) {
+        return y[slot];
+    }
+
+    public int health(int slot) {
+        return health[slot];
+    }
+
+    public int type(int slot) {
+        return type[slot];
+    }
+
+    /**
+     * @return true if position or health changed since the last broadcast
+     */
+    public boolean isDirty(int slot) {
+        return dirty[slot];
+    }
+
+    public void clearDirty(int slot) {
+        dirty[slot] = false;
+    }
+
+    /**
+     * Mark every living monster as broadcast
+     */
+    public void clearDirty() {
+        for (int i = 0; i < liveCount; i++) {
+            dirty[live[i]] = false;
+        }
+    }
+
+    /**
+     * Remove every monster, keeping the arrays for the next game
+     */
+    public void clear() {
+        Arrays.fill(livePos, -1);
+        liveCount = 0;
+        freeCount = 0;
+        used = 0;
+    }
+
+    private void remove(int slot) {
+        // Swap the last living monster into the hole
+        int pos = livePos[slot];
+        int last = live[--liveCount];
+        live[pos] = last;
+        livePos[last] = pos;
+        livePos[slot] = -1;
+        free[freeCount++] = slot;
+    }
+
+    // SplitMix64 steps, so the AI step draws random numbers without shared state or allocation
+    private static long nextState(long state) {
+        return state + 0x9E3779B97F4A7C15L;
+    }
+
+    private static int bounded(long state, int bound) {
+        long z = state;
+        z = (z ^ (z >>> 30)) * 0xBF58476D1CE4E5B9L;
+        z = (z ^ (z >>> 27)) * 0x94D049BB133111EBL;
+        z = z ^ (z >>> 31);
+        return (int) ((z >>> 33) % bound);
+    }
+
+    private static int stats(int monsterType) {
+        // Unknown types use SLIME stats
+        return monsterType >= 0 && monsterType < MAX_HEALTH.length ? monsterType : 0;
+    }
+
+    private void allocate(int capacity) {
+        x = new int[capacity];
+        y = new int[capacity];
+        health = new int[capacity];
+        type = new int[capacity];
+        moveDirection = new int[capacity];
+        moveTimer = new int[capacity];
+        moveDuration = new int[capacity];
+        dirty = new boolean[capacity];
+        live = new int[capacity];
+        livePos = new int[capacity];
+        free = new int[capacity];
+        Arrays.fill(livePos, -1);
+    }
+
+    private void grow(int capacity) {
+        int old = x.length;
+        x = Arrays.copyOf(x, capacity);
+        y = Arrays.copyOf(y, capacity);
+        health = Arrays.copyOf(health, capacity);
+        type = Arrays.copyOf(type, capacity);
+        moveDirection = Arrays.copyOf(moveDirection, capacity);
+        moveTimer = Arrays.copyOf(moveTimer, capacity);
+        moveDuration = Arrays.copyOf(moveDuration, capacity);
+        dirty = Arrays.copyOf(dirty, capacity);
+        live = Arrays.copyOf(live, capacity);
+        livePos = Arrays.copyOf(livePos, capacity);
+        free = Arrays.copyOf(free, capacity);
+        Arrays.fill(livePos, old, capacity, -1);
+    }
+}
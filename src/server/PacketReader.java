@@ -0,0 +1,103 @@
+package server;
+
+/**
+ * Cursor over the comma-separated fields of a text packet.
+ * Reads ints and field boundaries directly from the packet String without
+ * splitting it, so parsing a packet allocates nothing.
+ * Readers are reused per thread through {@link #of(String, int)}.
+ */
+public final class PacketReader {
+
+    private static final ThreadLocal<PacketReader> READERS = ThreadLocal.withInitial(PacketReader::new);
+
+    private String packet;
+    private int pos;
+    private int fieldStart;
+    private int fieldEnd;
+
+    private PacketReader() {
+    }
+
+    /**
+     * Get this thread's reader positioned on a packet
+     * @param packet the text packet
+     * @param start index of the first field, usually just past the command and its comma
+     * @return the reader
+     */
+    public static PacketReader of(String packet, int start) {
+        PacketReader reader = READERS.get();
+        reader.packet = packet;
+        reader.pos = start;
+        reader.fieldStart = start;
+        reader.fieldEnd = start;
+        return reader;
+    }
+
+    /**
+     * Advance over the next field and remember its bounds
+     * @return this reader
+     * @throws IllegalArgumentException if there are no fields left
+     */
+    public PacketReader next() {
+        if (pos > packet.length()) {
+            throw new IllegalArgumentException("Missing field in packet: " + packet);
+        }
+        int end = packet.indexOf(',', pos);
+        if (end < 0) end = packet.length();
+        fieldStart = pos;
+        fieldEnd = end;
+        pos = end + 1;
+        return this;
+    }
+
+    /**
+     * Read the next field as an int
+     * @throws NumberFormatException if the field is not an int
+     */
+    public int nextInt() {
+        next();
+        int i = fieldStart;
+        if (i == fieldEnd) {
+            throw new NumberFormatException("Empty int field in packet: " + packet);
+        }
+        boolean negative = packet.charAt(i) == '-';
+        if (negative || packet.charAt(i) == '+') {
+            i++;
+            if (i == fieldEnd) {
+                throw new NumberFormatException("Invalid int field in packet: " + packet);
+            }
+        }
+        // Accumulate negatively so Integer.MIN_VALUE parses without overflow
+        int limit = negative ? Integer.MIN_VALUE : -Integer.MAX_VALUE;
+        int result = 0;
+        for (; i < fieldEnd; i++) {
+            int digit = packet.charAt(i) - '0';
+            if (digit < 0 || digit > 9 || result < limit / 10) {
+                throw new NumberFormatException("Invalid int field in packet: " + packet);
+            }
+            result *= 10;
+            if (result < limit + digit) {
+                throw new NumberFormatException("Invalid int field in packet: " + packet);
+            }
+            result -= digit;
+        }
+        return negative ? result : -result;
+    }
+
+    /**
+     * @param expected the text to compare with
+     * @return true if the last field read equals the text, compared in place
+     */
+    public boolean fieldEquals(String expected) {
+        int len = fieldEnd - fieldStart;
+        return expected != null && expected.length() == len
+                && packet.regionMatches(fieldStart, expected, 0, len);
+    }
+
+    /**
+     * Copy the last field read. Allocates, so only used off the fast path.
+     */
+    public String fieldString() {
+        return packet.substring(fieldStart, fieldEnd);
+    }
+}
@@ -0,0 +1,125 @@
+package server;
+
+import org.java_websocket.WebSocket;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Registry of online players with O(1) lookup by username and by connection.
+ * The player is stored as the connection attachment so a handler holding the
+ * WebSocket never has to search for its player.
+ * Iteration goes through an immutable snapshot that is only rebuilt when a player
+ * joins or leaves, so relaying a packet to everyone does not copy or lock anything.
+ */
+public class PlayerRegistry {
+
+    private final Map<String, ClientInfo> byUsername = new ConcurrentHashMap<>();
+    private volatile List<ClientInfo> snapshot = Collections.emptyList();
+    private volatile List<WebSocket> connections = Collections.emptyList();
+
+    /**
+     * Register a player and attach it to its connection.
+     * A player already registered under the same username is replaced and detached from its connection.
+     * @param player the player to add
+     * @return the replaced player, or null; the caller must drop it from its room
+     */
+    public synchronized ClientInfo add(ClientInfo player) {
+        ClientInfo previous = byUsername.put(player.getUsername(), player);
+        if (previous != null && previous != player) {
+            WebSocket old = previous.getWebSocket();
+            if (old != null && old.getAttachment() == previous) {
+                old.setAttachment(null);
+            }
+        }
+        if (player.getWebSocket() != null) {
+            player.getWebSocket().setAttachment(player);
+        }
+        List<ClientInfo> next = new ArrayList<>(snapshot.size() + 1);
+        for (ClientInfo p : snapshot) {
+            if (p != previous) next.add(p);
+        }
+        next.add(player);
+        publish(next);
+        return previous != player ? previous : null;
+    }
+
+    /**
+     * Unregister a player and detach it from its connection
+     * @param player the player to remove
+     * @return true if the player was registered
+     */
+    public synchronized boolean remove(ClientInfo player) {
+        if (player == null || !byUsername.remove(player.getUsername(), player)) {
+            return false;
+        }
+        WebSocket conn = player.getWebSocket();
+        if (conn != null && conn.getAttachment() == player) {
+            conn.setAttachment(null);
+        }
+        List<ClientInfo> next = new ArrayList<>(snapshot);
+        next.remove(player);
+        publish(next);
+        return true;
+    }
+
+    /**
+     * @param username the username of the player
+     * @return the player, or null if not online
+     */
+    public ClientInfo get(String username) {
+        return username == null ? null : byUsername.get(username);
+    }
+
+    /**
+     * @param conn the connection of the player
+     * @return the player attached to the connection, or null if it has not said Hello yet
+     */
+    public ClientInfo get(WebSocket conn) {
+        if (conn == null) return null;
+        Object attachment = conn.getAttachment();
+        return attachment instanceof ClientInfo ? (ClientInfo) attachment : null;
+    }
+
+    /**
+     * @param username the username of the player
+     * @return true if the player is online
+     */
+    public boolean contains(String username) {
+        return username != null && byUsername.containsKey(username);
+    }
+
+    /**
+     * Immutable list of the online players at the time of the call, in join order.
+     * Safe to iterate from any thread while players join or leave.
+     */
+    public List<ClientInfo> snapshot() {
+        return snapshot;
+    }
+
+    /**
+     * Immutable list of the connections of the online players, matching {@link #snapshot()}.
+     * Used as the recipient list for broadcasts.
+     */
+    public List<WebSocket> connections() {
+        return connections;
+    }
+
+    public int size() {
+        return snapshot.size();
+    }
+
+    private void publish(List<ClientInfo> players) {
+        List<WebSocket> conns = new ArrayList<>(players.size());
+        for (ClientInfo player : players) {
+            if (player.getWebSocket() != null) {
+                conns.add(player.getWebSocket());
+            }
+        }
+        connections = Collections.unmodifiableList(conns);
+        snapshot = Collections.unmodifiableList(players);
+    }
+}
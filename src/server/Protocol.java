@@ -4,10 +4,15 @@ package server;
  * This class is responsible for creating the protocol for the server.
  * It is used to create packets that are sent between the server and the client.
  * The packets are used to communicate information about the game state between the server and the client.
+ * The instance is shared by the WebSocket and game loop threads, so it keeps no state:
+ * every packet is built in a StringBuilder reused per thread.
  */
 public class Protocol {
 
-    private String message = "";
+    // Builders larger than this are dropped after use instead of being kept for the thread
+    private static final int MAX_RETAINED_CAPACITY = 8192;
+
+    private static final ThreadLocal<StringBuilder> BUFFER = ThreadLocal.withInitial(() -> new StringBuilder(128));
 
     /**
      * Creates a new instance of Protocol
@@ -15,13 +20,25 @@ public class Protocol {
     public Protocol() {
     }
 
+    /**
+     * Get this thread's builder, emptied and ready for a new packet
+     */
+    private static StringBuilder buffer() {
+        StringBuilder sb = BUFFER.get();
+        if (sb.capacity() > MAX_RETAINED_CAPACITY) {
+            sb = new StringBuilder(128);
+            BUFFER.set(sb);
+        }
+        sb.setLength(0);
+        return sb;
+    }
+
     /**
      * IDPacket
      * @param id the id of the player
      */
     public String IDPacket(int id) {
-        message = "ID" + id;
-        return message;
+        return buffer().append("ID").append(id).toString();
     }
 
     /**
@@ -30,8 +47,7 @@ public class Protocol {
      * @param username the username of the player
      */
     public String IDPacket(int id, String username) {
-        message = "ID" + id + "," + username;
-        return message;
+        return buffer().append("ID").append(id).append(',').append(username).toString();
     }
 
     /**
@@ -42,8 +58,8 @@ public class Protocol {
      * @param id the id of the player
      */
     public String NewClientPacket(int x, int y, int dir, int id) {
-        message = "NewClient" + x + "," + y + "-" + dir + "|" + id;
-        return message;
+        return buffer().append("NewClient").append(x).append(',').append(y)
+                .append('-').append(dir).append('|').append(id).toString();
     }
 
     /**
@@ -56,8 +72,8 @@ public class Protocol {
      * @param map the map of the player
      */
     public String NewClientPacket(String username, int x, int y, int dir, int id, String map) {
-        message = "NewClient" + username + "," + x + "-" + y + "|" + dir + "!" + id + "#" + map;
-        return message;
+        return buffer().append("NewClient").append(username).append(',').append(x).append('-').append(y)
+                .append('|').append(dir).append('!').append(id).append('#').append(map).toString();
     }
 
     /**
@@ -67,8 +83,7 @@ public class Protocol {
      * @return the message
      */
     public String LoginPacket(String status,String msg) {
-        message = "Login," + status + "," + msg;
-        return message;
+        return buffer().append("Login,").append(status).append(',').append(msg).toString();
     }
 
     /**
@@ -78,8 +93,7 @@ public class Protocol {
      * @return the message
      */
     public String registerPacket(String status, String msg) {
-        message = "Register," + status + "," + msg;
-        return message;
+        return buffer().append("Register,").append(status).append(',').append(msg).toString();
     }
 
     /**
@@ -88,8 +102,17 @@ public class Protocol {
      * @return the message
      */
     public String leaderBoardPacket(String msg) {
-        message = "Leaderboard" + msg;
-        return message;
+        return buffer().append("Leaderboard").append(msg).toString();
+    }
+
+    /**
+     * LeaderBoardDiffPacket
+     * @param size the number of rows in the new leaderboard, clients drop rows past it
+     * @param rows the changed rows as ",rank|username|points..."
+     * @return the message
+     */
+    public String leaderBoardDiffPacket(int size, String rows) {
+        return buffer().append("LeaderboardDiff,").append(size).append(rows).toString();
     }
 
     /**
@@ -98,18 +121,16 @@ public class Protocol {
      * @return the message
      */
     public String mazeMapPacket(String msg) {
-        message = "MazeMap," + msg;
-        return message;
+        return buffer().append("MazeMap,").append(msg).toString();
     }
 
     public String teleportPacket(String username, String map, int x, int y) {
-        message = "TeleportMap," + username + "," + map + "," + x + "," + y;
-        return message;
+        return buffer().append("TeleportMap,").append(username).append(',').append(map)
+                .append(',').append(x).append(',').append(y).toString();
     }
 
     public String removePlayerPacket(String username) {
-        message = "Exit" + username;
-        return message;
+        return buffer().append("Exit").append(username).toString();
     }
     
     // ============== Skin Shop Protocols ==============
@@ -118,32 +139,58 @@ public class Protocol {
      * Send list of skins in shop
      */
     public String skinsListPacket(java.util.List<dao.ShopDAO.SkinItem> skins) {
-        StringBuilder sb = new StringBuilder("SkinsList");
+        StringBuilder sb = buffer().append("SkinsList");
         for (dao.ShopDAO.SkinItem skin : skins) {
             sb.append(",").append(skin.toProtocolString());
         }
         return sb.toString();
     }
     
+    /**
+     * Send the legacy item shop list: ItemsList,id|name|price,...
+     */
+    public String itemsListPacket(java.util.List<dao.ItemDAO.Item> items) {
+        StringBuilder sb = buffer().append("ItemsList");
+        for (dao.ItemDAO.Item item : items) {
+            sb.append(",").append(item.toProtocolString());
+        }
+        return sb.toString();
+    }
+    
+    /**
+     * Send the version of the skin catalog that was just sent
+     */
+    public String skinsVersionPacket(long version) {
+        return buffer().append("SkinsVersion,").append(version).toString();
+    }
+    
+    /**
+     * Tell the client its cached skin catalog is still current
+     */
+    public String skinsNotModifiedPacket(long version) {
+        return buffer().append("SkinsNotModified,").append(version).toString();
+    }
+    
     /**
      * Send player's coins
      */
     public String playerCoinsPacket(int coins) {
-        return "PlayerCoins," + coins;
+        return buffer().append("PlayerCoins,").append(coins).toString();
     }
     
     /**
      * Send buy result
      */
     public String buyResultPacket(boolean success, String msg, int newBalance) {
-        return "BuyResult," + (success ? "success" : "failed") + "," + msg + "," + newBalance;
+        return buffer().append("BuyResult,").append(success ? "success" : "failed").append(',')
+                .append(msg).append(',').append(newBalance).toString();
     }
     
     /**
      * Send list of player's skins
      */
     public String playerSkinsPacket(java.util.List<dao.ShopDAO.PlayerSkin> skins) {
-        StringBuilder sb = new StringBuilder("PlayerSkins");
+        StringBuilder sb = buffer().append("PlayerSkins");
         for (dao.ShopDAO.PlayerSkin skin : skins) {
             sb.append(",").append(skin.toProtocolString());
         }
@@ -154,7 +201,89 @@ public class Protocol {
      * Send equipped skin
      */
     public String equippedSkinPacket(String skinFolder) {
-        return "EquippedSkin," + skinFolder;
+        return buffer().append("EquippedSkin,").append(skinFolder).toString();
+    }
+
+    // ============== Monster Hunt Protocols ==============
+
+    /**
+     * MonsterUpdatePacket - state of a single monster
+     * @param id the id of the monster
+     * @param x the x coordinate of the monster
+     * @param y the y coordinate of the monster
+     * @param health the current health of the monster
+     * @return the message
+     */
+    public String monsterUpdatePacket(int id, int x, int y, int health) {
+        return buffer().append("MonsterUpdate,").append(id).append(',').append(x)
+                .append(',').append(y).append(',').append(health).toString();
+    }
+
+    /**
+     * MonsterSnapshotPacket - state of several monsters in one message
+     * Format: MonsterSnapshot,id|x|y|health,id|x|y|health,...
+     * @param monsters the monsters, only living ones changed since the last broadcast are included
+     * @return the message
+     */
+    public String monsterSnapshotPacket(MonsterWorld monsters) {
+        StringBuilder sb = buffer().append("MonsterSnapshot");
+        for (int i = 0; i < monsters.count(); i++) {
+            int slot = monsters.slotAt(i);
+            if (!monsters.isDirty(slot)) continue;
+            sb.append(',').append(monsters.id(slot)).append('|').append(monsters.x(slot))
+                    .append('|').append(monsters.y(slot)).append('|').append(monsters.health(slot));
+        }
+        return sb.toString();
+    }
+
+    /**
+     * SpawnMonsterPacket
+     * @param id the id of the monster
+     * @param type the type of the monster
+     * @param x the x coordinate of the monster
+     * @param y the y coordinate of the monster
+     * @return the message
+     */
+    public String spawnMonsterPacket(int id, int type, int x, int y) {
+        return buffer().append("SpawnMonster,").append(id).append(',').append(type)
+                .append(',').append(x).append(',').append(y).toString();
+    }
+
+    /**
+     * HuntTimePacket
+     * @param seconds the seconds left in the hunt
+     * @return the message
+     */
+    public String huntTimePacket(int seconds) {
+        return buffer().append("HuntTime,").append(seconds).toString();
+    }
+
+    /**
+     * HuntWavePacket
+     * @param wave the current wave
+     * @return the message
+     */
+    public String huntWavePacket(int wave) {
+        return buffer().append("HuntWave,").append(wave).toString();
+    }
+
+    /**
+     * MazeTimePacket
+     * @param seconds the seconds left in the maze
+     * @return the message
+     */
+    public String mazeTimePacket(int seconds) {
+        return buffer().append("MazeTime,").append(seconds).toString();
+    }
+
+    /**
+     * ChangeSkinPacket
+     * @param username the username of the player
+     * @param skinFolder the skin folder the player now uses
+     * @return the message
+     */
+    public String changeSkinPacket(String username, String skinFolder) {
+        return buffer().append("ChangeSkin,").append(username).append(',').append(skinFolder).toString();
     }
 
     /**
@@ -166,7 +295,7 @@ public class Protocol {
      * @return the message
      */
     public String UpdatePacket(String username, int x, int y, int dir) {
-        message = "Update," + username + "," + x + "," + y + "," + dir;
-        return message;
+        return buffer().append("Update,").append(username).append(',').append(x)
+                .append(',').append(y).append(',').append(dir).toString();
     }
 }
@@ -0,0 +1,127 @@
+package server;
+
+import org.java_websocket.WebSocket;
+
+import java.util.Collections;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Keeps a live set of members for every map ("lobby", "hunt", "maze", "Loading").
+ * Map-scoped broadcasts iterate only the members of the target map instead of
+ * scanning every online player and comparing map names.
+ * The connections of each map are kept alongside so a broadcast can hand them
+ * straight to {@code WebSocketServer.broadcast} without building a list.
+ * Changes to one player's membership are serialized on the player, so two moves
+ * of the same player cannot interleave.
+ */
+public class RoomRegistry {
+
+    private final Map<String, Set<ClientInfo>> rooms = new ConcurrentHashMap<>();
+    private final Map<String, Set<WebSocket>> connections = new ConcurrentHashMap<>();
+
+    /**
+     * Add a player to a map
+     * @param map the map name
+     * @param player the player joining the map
+     */
+    public void join(String map, ClientInfo player) {
+        if (map == null || player == null) return;
+        synchronized (player) {
+            add(map, player);
+        }
+    }
+
+    private void add(String map, ClientInfo player) {
+        rooms.computeIfAbsent(map, k -> ConcurrentHashMap.newKeySet()).add(player);
+        if (player.getWebSocket() != null) {
+            connections.computeIfAbsent(map, k -> ConcurrentHashMap.newKeySet()).add(player.getWebSocket());
+        }
+    }
+
+    /**
+     * Remove a player from a map
+     * @param map the map name
+     * @param player the player leaving the map
+     */
+    public void leave(String map, ClientInfo player) {
+        if (map == null || player == null) return;
+        synchronized (player) {
+            drop(map, player);
+        }
+    }
+
+    private void drop(String map, ClientInfo player) {
+        Set<ClientInfo> members = rooms.get(map);
+        if (members != null) {
+            members.remove(player);
+        }
+        Set<WebSocket> conns = connections.get(map);
+        if (conns != null && player.getWebSocket() != null) {
+            conns.remove(player.getWebSocket());
+        }
+    }
+
+    /**
+     * Move a player from its current map to another one and update the player's map field.
+     * The player joins the destination before leaving the source, so a concurrent reader
+     * never finds it in neither room. A player already removed is not added back.
+     * @param player the player to move
+     * @param map the destination map
+     */
+    public void move(ClientInfo player, String map) {
+        if (player == null || map == null) return;
+        synchronized (player) {
+            String from = player.getMap();
+            Set<ClientInfo> members = from != null ? rooms.get(from) : null;
+            if (members == null || !members.contains(player)) return;
+            if (!map.equals(from)) {
+                add(map, player);
+                drop(from, player);
+            }
+            player.setMap(map);
+        }
+    }
+
+    /**
+     * Remove a player from whatever map it is currently in
+     * @param player the player to remove
+     */
+    public void remove(ClientInfo player) {
+        if (player == null) return;
+        synchronized (player) {
+            if (player.getMap() == null) return;
+            drop(player.getMap(), player);
+        }
+    }
+
+    /**
+     * Live view of the members of a map. Safe to iterate while players join or leave.
+     * @param map the map name
+     * @return the members of the map, empty if nobody is there
+     */
+    public Set<ClientInfo> members(String map) {
+        Set<ClientInfo> members = rooms.get(map);
+        return members == null ? Collections.emptySet() : Collections.unmodifiableSet(members);
+    }
+
+    /**
+     * Live view of the connections of the members of a map
+     * @param map the map name
+     * @return the connections in the map, empty if nobody is there
+     */
+    public Set<WebSocket> connections(String map) {
+        Set<WebSocket> conns = connections.get(map);
+        return conns == null ? Collections.emptySet() : Collections.unmodifiableSet(conns);
+    }
+
+    /**
+     * @param map the map name
+     * @return true if nobody is in the map
+     */
+    public boolean isEmpty(String map) {
+        Set<ClientInfo> members = rooms.get(map);
+        return members == null || members.isEmpty();
+    }
+}
@@ -0,0 +1,165 @@
+package server;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.List;
+
+/**
+ * Uniform grid of the players on one map, for nearest-player searches.
+ * Rebuilt once per tick, then each search only looks at the cells within range
+ * instead of every player, comparing squared distances.
+ * Cells are found through an open-addressing table of primitive keys and the players of a cell
+ * are chained through int arrays, so searches allocate nothing. Player positions are copied
+ * at rebuild, so searches from several threads all see the same positions.
+ * Rebuild from the game loop; searches may then run in parallel until the next rebuild.
+ */
+public class SpatialGrid {
+
+    private final int cellSize;
+    private final List<ClientInfo> players = new ArrayList<>();
+
+    // Cell table: key of each cell and its first entry, -1 when the table slot is empty
+    private long[] cellKeys = new long[64];
+    private int[] cellHeads = new int[64];
+
+    // Entries, one per indexed player, chained per cell
+    private ClientInfo[] entries = new ClientInfo[32];
+    private int[] xs = new int[32];
+    private int[] ys = new int[32];
+    private int[] next = new int[32];
+
+    /**
+     * @param cellSize cell width and height in pixels, best set to the usual search range
+     */
+    public SpatialGrid(int cellSize) {
+        this.cellSize = cellSize;
+        Arrays.fill(cellHeads, -1);
+    }
+
+    /**
+     * Replace the contents with the living players of one map
+     * @param players candidates, players on other maps are skipped
+     * @param map the map to index
+     */
+    public void rebuild(Collection<ClientInfo> players, String map) {
+        this.players.clear();
+        if (players != null) {
+            for (ClientInfo p : players) {
+                if (p != null && p.isAlive && map.equals(p.getMap())) {
+                    this.players.add(p);
+                }
+            }
+        }
+
+        int count = this.players.size();
+        if (entries.length < count) {
+            int capacity = Math.max(count, entries.length * 2);
+            entries = new ClientInfo[capacity];
+            xs = new int[capacity];
+            ys = new int[capacity];
+            next = new int[capacity];
+        }
+        // Keep the table at most half full
+        if (cellHeads.length < count * 2) {
+            int capacity = Integer.highestOneBit(count * 2 - 1) << 1;
+            cellKeys = new long[capacity];
+            cellHeads = new int[capacity];
+        }
+        Arrays.fill(cellHeads, -1);
+        Arrays.fill(entries, count, entries.length, null);
+
+        for (int e = 0; e < count; e++) {
+            ClientInfo p = this.players.get(e);
+            int px = p.getX();
+            int py = p.getY();
+            entries[e] = p;
+            xs[e] = px;
+            ys[e] = py;
+            int slot = slotFor(key(cellOf(px), cellOf(py)));
+            next[e] = cellHeads[slot];
+            cellHeads[slot] = e;
+        }
+    }
+
+    /**
+     * Find the nearest player strictly within range
+     * @param x search position
+     * @param y search position
+     * @param range search radius in pixels
+     * @return the nearest player, or null if none is in range
+     */
+    public ClientInfo nearest(int x, int y, int range) {
+        if (players.isEmpty()) return null;
+
+        int cx = cellOf(x);
+        int cy = cellOf(y);
+        int reach = (range + cellSize - 1) / cellSize;
+        long best = (long) range * range;
+        int target = -1;
+
+        for (int gx = cx - reach; gx <= cx + reach; gx++) {
+            for (int gy = cy - reach; gy <= cy + reach; gy++) {
+                for (int e = headOf(key(gx, gy)); e >= 0; e = next[e]) {
+                    long dx = xs[e] - x;
+                    long dy = ys[e] - y;
+                    long dst = dx * dx + dy * dy;
+                    if (dst < best) {
+                        best = dst;
+                        target = e;
+                    }
+                }
+            }
+        }
+        return target >= 0 ? entries[target] : null;
+    }
+
+    /**
+     * @return number of indexed players
+     */
+    public int size() {
+        return players.size();
+    }
+
+    /**
+     * @return the indexed players, valid until the next rebuild
+     */
+    public List<ClientInfo> players() {
+        return players;
+    }
+
+    // Table slot holding this cell, claimed if the cell is new
+    private int slotFor(long key) {
+        int mask = cellHeads.length - 1;
+        int slot = hash(key) & mask;
+        while (cellHeads[slot] >= 0 && cellKeys[slot] != key) {
+            slot = (slot + 1) & mask;
+        }
+        cellKeys[slot] = key;
+        return slot;
+    }
+
+    // First entry of a cell, -1 if the cell is empty
+    private int headOf(long key) {
+        int mask = cellHeads.length - 1;
+        int slot = hash(key) & mask;
+        while (cellHeads[slot] >= 0) {
+            if (cellKeys[slot] == key) return cellHeads[slot];
+            slot = (slot + 1) & mask;
+        }
+        return -1;
+    }
+
+    private int cellOf(int coord) {
+        return Math.floorDiv(coord, cellSize);
+    }
+
+    private static long key(int cx, int cy) {
+        return ((long) cx << 32) | (cy & 0xffffffffL);
+    }
+
+    private static int hash(long key) {
+        long h = key * 0x9E3779B97F4A7C15L;
+        return (int) (h ^ (h >>> 32));
+    }
+}
@@ -1,7 +1,13 @@
 package server;
 
 import dao.GameHistoryDAO;
+import dao.ItemDAO;
+import dao.PlayerSession;
+import dao.PlayerSessionDAO;
+import dao.SchemaMigrator;
 import dao.ShopDAO;
+import dao.WriteBehindQueue;
+import databaseConnect.DatabaseExecutor;
 import map.MazeGen;
 import service.PlayerService;
 import org.java_websocket.WebSocket;
@@ -10,11 +16,19 @@ import org.java_websocket.server.WebSocketServer;
 
 import java.io.IOException;
 import java.net.InetSocketAddress;
-import java.sql.*;
+import java.nio.ByteBuffer;
 import java.util.ArrayList;
+import java.util.Collection;
 import java.util.HashMap;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
+import java.util.SplittableRandom;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.atomic.AtomicLong;
 
 /**
  * WebSocket-based game server for Mini Island 2D
@@ -25,47 +39,100 @@ public class WebSocketGameServer extends WebSocketServer {
     // Maximum number of players allowed on the server
     private static final int MAX_PLAYERS = 20;
 
-    private ArrayList<ClientInfo> playerOnline;
-    private Map<WebSocket, String> connectionAuthMap; // Track authentication per connection
+    // Send one MonsterSnapshot per tick instead of one MonsterUpdate per monster.
+    // Start with -Dminiisland.monsterSnapshot=false to keep per-monster messages for older clients.
+    private static final boolean MONSTER_SNAPSHOT =
+            Boolean.parseBoolean(System.getProperty("miniisland.monsterSnapshot", "true"));
+
+    // Most monsters alive at once in a hunt, -Dminiisland.hunt.maxMonsters=15
+    private static final int MAX_HUNT_MONSTERS = Integer.getInteger("miniisland.hunt.maxMonsters", 15);
+
+    // Minimum time between two leaderboard pushes, -Dminiisland.leaderboardIntervalMs=500
+    private static final long LEADERBOARD_INTERVAL_MS = Long.getLong("miniisland.leaderboardIntervalMs", 500);
+
+    private PlayerRegistry playerOnline; // Online players by username and by connection
+    private RoomRegistry rooms; // Live membership per map for map-scoped broadcasts
+    private Map<WebSocket, String> connectionAuthMap; // Track authentication per connection, written from DB callbacks too
+    private Set<WebSocket> binaryClients = ConcurrentHashMap.newKeySet(); // Connections that chose the binary codec
+    private Set<WebSocket> leaderboardDiffClients = ConcurrentHashMap.newKeySet(); // Connections that take LeaderboardDiff
     private Protocol protocol;
+    private CommandDispatcher dispatcher; // Inbound packets by command token
     private PlayerService playerService;
     private GameHistoryDAO gameHistoryDAO;
     private ShopDAO shopDAO;
+    private PlayerSessionDAO sessionDAO; // Loads a player's account state at Hello
+    private ItemDAO itemDAO; // Legacy item shop
+    private LeaderboardBroadcaster leaderboardBroadcaster; // Coalesced leaderboard pushes
 
-    // Monster Hunt
-    private java.util.Timer huntTimer;
+    // Monster Hunt - all hunt state below is only touched on huntLoop
+    private GameLoop huntLoop = new GameLoop("hunt");
+    private ScheduledFuture<?> huntTimer;
     private int huntTimeRemaining = 60;
     private boolean huntActive = false;
     private Map<String, Integer> huntScores = new HashMap<>();
 
-    // Monster synchronization - use ConcurrentHashMap for thread safety
-    private Map<Integer, MonsterData> huntMonsters = new java.util.concurrent.ConcurrentHashMap<>();
-    private int nextMonsterId = 1;
+    // Monster synchronization
+    private final MonsterWorld huntMonsters = new MonsterWorld(MAX_HUNT_MONSTERS);
+    // Hunt players indexed once per monster tick, used only on the hunt loop
+    private final SpatialGrid huntGrid = new SpatialGrid(MonsterWorld.VISION_RANGE);
+    // Paths towards those players, shared by every monster
+    private final FlowField huntPaths = new FlowField(MonsterWorld.MIN_BOUND, MonsterWorld.MAX_BOUND);
     private int monsterUpdateTick = 0;
-    private java.util.Timer monsterTimer; // Fast timer for monster movement
+    // Monster tick period and the cost of recent ticks, for headroom monitoring
+    private static final long MONSTER_TICK_MS = 33;
+    private volatile long lastMonsterTickNanos = 0;
+    private final AtomicLong maxMonsterTickNanos = new AtomicLong();
+    private ScheduledFuture<?> monsterTimer; // Fast tick for monster movement
+
+    // Maze - all maze state below is only touched on mazeLoop
+    private GameLoop mazeLoop = new GameLoop("maze");
 
     //Maze gen
     private MazeGen mazeGen = new MazeGen(10, 20);
     private boolean winMaze = true;
 
     // Maze Timer (đồng bộ thời gian giữa các người chơi)
-    private java.util.Timer mazeTimer;
+    private ScheduledFuture<?> mazeTimer;
     private int mazeTimeRemaining = 120; // 2 phút
     private boolean mazeActive = false;
 
     public WebSocketGameServer(int port) {
         super(new InetSocketAddress(port));
-        playerOnline = new ArrayList<ClientInfo>();
-        connectionAuthMap = new HashMap<>();
+        playerOnline = new PlayerRegistry();
+        rooms = new RoomRegistry();
+        connectionAuthMap = new ConcurrentHashMap<>();
         protocol = new Protocol();
+        // Schema changes run once here, DAOs issue no DDL.
+        // Nothing may touch the database, the write-behind queue included, on a schema that failed to migrate
+        if (!new SchemaMigrator().migrate()) {
+            throw new IllegalStateException("Schema migration failed, server not started");
+        }
         playerService = new PlayerService();
         gameHistoryDAO = new GameHistoryDAO();
         shopDAO = new ShopDAO();
+        sessionDAO = new PlayerSessionDAO(shopDAO);
+        itemDAO = new ItemDAO();
+        shopDAO.reloadSkinCatalog(); // Warm the catalog so the first GetSkins is served from memory
+        leaderboardBroadcaster = new LeaderboardBroadcaster(playerService::leaderBoardSnapshot, protocol,
+                this::publishLeaderBoard, LEADERBOARD_INTERVAL_MS);
+        dispatcher = new CommandDispatcher();
+        registerCommands();
     }
 
     @Override
     public void onOpen(WebSocket conn, ClientHandshake handshake) {
         System.out.println("New connection from " + conn.getRemoteSocketAddress());
+
+        // Clients pick the codec for high-rate packets when connecting: ws://host:port/?codec=binary
+        if ("binary".equals(queryParam(handshake.getResourceDescriptor(), "codec"))) {
+            binaryClients.add(conn);
+            System.out.println("Binary codec enabled for " + conn.getRemoteSocketAddress());
+        }
+
+        // Clients that apply leaderboard diffs connect with ?leaderboard=diff
+        if ("diff".equals(queryParam(handshake.getResourceDescriptor(), "leaderboard"))) {
+            leaderboardDiffClients.add(conn);
+        }
     }
 
     @Override
@@ -75,15 +142,17 @@ public class WebSocketGameServer extends WebSocketServer {
         // Find and remove player associated with this connection
         String username = connectionAuthMap.get(conn);
         if (username != null) {
-            for (ClientInfo player : playerOnline) {
-                if (player != null && player.getUsername().equals(username)) {
-                    playerOnline.remove(player);
-                    broadcastMessage("Exit" + username);
-                    break;
-                }
+            ClientInfo player = playerOnline.get(conn);
+            if (player != null && playerOnline.remove(player)) {
+                rooms.remove(player);
+                broadcastMessage("Exit" + username);
+                // Only the live player's entry: a connection replaced by a reconnect must not evict it
+                shopDAO.getSkinCache().evict(username);
             }
             connectionAuthMap.remove(conn);
         }
+        binaryClients.remove(conn);
+        leaderboardDiffClients.remove(conn);
     }
 
     @Override
@@ -96,6 +165,18 @@ public class WebSocketGameServer extends WebSocketServer {
         }
     }
 
+    @Override
+    public void onMessage(WebSocket conn, ByteBuffer message) {
+        String sentence = null;
+        try {
+            sentence = BinaryProtocol.decode(message);
+            handleMessage(conn, sentence);
+        } catch (Exception e) {
+            e.printStackTrace();
+            System.err.println("Error handling binary message: " + (sentence != null ? sentence : message));
+        }
+    }
+
     @Override
     public void onError(WebSocket conn, Exception ex) {
         System.err.println("WebSocket error: " + ex.getMessage());
@@ -104,62 +185,67 @@ public class WebSocketGameServer extends WebSocketServer {
 
     @Override
     public void onStart() {
+        leaderboardBroadcaster.start();
         System.out.println("WebSocket Game Server started successfully!");
     }
 
     private void handleMessage(WebSocket conn, String sentence) {
+        dispatcher.dispatch(conn, sentence);
+    }
+
+    /**
+     * Register a handler for every inbound command
+     */
+    private void registerCommands() {
         int defaultX = 1645;
         int defaultY = 754;
 
-        if (sentence.startsWith("Login")) {
-            handleLogin(conn, sentence);
-        } else if (sentence.startsWith("Register")) {
-            handleRegister(conn, sentence);
-        } else if (sentence.startsWith("Hello")) {
-            handleHello(conn, sentence, defaultX, defaultY);
-        } else if (sentence.startsWith("Update")) {
-            handleUpdate(sentence);
-        } else if (sentence.startsWith("TeleportToMap") || sentence.startsWith("TeleportMap")) {
-            handleTeleportToMap(sentence);
-        } else if (sentence.startsWith("EnterMaze")) {
-            handleEnterMaze(sentence);
-        } else if (sentence.startsWith("WinMaze")) {
-            handleWinMaze(sentence);
-        } else if (sentence.startsWith("BulletCollision")) {
-            handleBulletCollision(sentence);
-        } else if (sentence.startsWith("Respawn")) {
-            handleRespawn(sentence);
-        } else if (sentence.startsWith("Chat")) {
-            broadcastMessage(sentence);
-        } else if (sentence.startsWith("Shot")) {
-            broadcastMessage(sentence);
-        } else if (sentence.startsWith("Remove")) {
-            handleRemove(sentence);
-        } else if (sentence.startsWith("Exit")) {
-            handleExit(sentence);
-        } else if (sentence.startsWith("Exit Auth")) {
-            handleExitAuth(conn);
-        } else if (sentence.startsWith("GET_ITEMS")) {
-            handleGetItems(conn);
-        } else if (sentence.startsWith("BUY_ITEM")) {
-            handleBuyItem(conn, sentence);
-        } else if (sentence.startsWith("ScoreBattleEnd")) {
-            handleScoreBattleEnd(conn, sentence);
-        } else if (sentence.startsWith("MazeEnd")) {
-            handleMazeEnd(conn, sentence);
-        } else if (sentence.startsWith("Shop,")) {
-            handleShopRequest(conn, sentence);
-        } else if (sentence.startsWith("SpawnMonster")) {
-            broadcastToMap("hunt", sentence);
-        } else if (sentence.startsWith("MonsterDead")) {
-            handleMonsterDead(sentence);
-        } else if (sentence.startsWith("MonsterHit")) {
-            handleMonsterHit(sentence);
-        } else if (sentence.startsWith("BulletUpdate")) {
-            broadcastToMap("hunt", sentence);
-        } else if (sentence.startsWith("ScoreUpdate")) {
-            handleScoreUpdate(sentence);
-        }
+        dispatcher.register("Login", this::handleLogin);
+        dispatcher.register("Register", this::handleRegister);
+        dispatcher.registerPrefix("Hello", (conn, sentence) -> handleHello(conn, sentence, defaultX, defaultY));
+        dispatcher.register("Update", this::handleUpdate);
+        dispatcher.register("TeleportToMap", (conn, sentence) -> handleTeleportToMap(sentence));
+        dispatcher.register("TeleportMap", (conn, sentence) -> handleTeleportToMap(sentence));
+        dispatcher.registerPrefix("EnterMaze", (conn, sentence) -> mazeLoop.execute(() -> handleEnterMaze(sentence)));
+        dispatcher.registerPrefix("WinMaze", (conn, sentence) -> mazeLoop.execute(() -> handleWinMaze(sentence)));
+        dispatcher.register("BulletCollision", (conn, sentence) -> handleBulletCollision(sentence));
+        dispatcher.registerPrefix("Respawn", (conn, sentence) -> handleRespawn(sentence));
+        dispatcher.register("Chat", (conn, sentence) -> broadcastMessage(sentence));
+        dispatcher.register("Shot", (conn, sentence) -> broadcastMessage(sentence));
+        dispatcher.registerPrefix("Remove", (conn, sentence) -> handleRemove(sentence));
+        dispatcher.registerPrefix("Exit Auth", (conn, sentence) -> handleExitAuth(conn));
+        dispatcher.registerPrefix("Exit", (conn, sentence) -> handleExit(sentence));
+        dispatcher.register("GET_ITEMS", (conn, sentence) -> handleGetItems(conn));
+        dispatcher.register("BUY_ITEM", this::handleBuyItem);
+        dispatcher.register("ScoreBattleEnd", this::handleScoreBattleEnd);
+        dispatcher.register("MazeEnd", (conn, sentence) -> mazeLoop.execute(() -> handleMazeEnd(conn, sentence)));
+        dispatcher.register("Shop", this::handleShopRequest);
+        dispatcher.register("SpawnMonster", (conn, sentence) -> broadcastToMap("hunt", sentence));
+        dispatcher.register("MonsterDead", (conn, sentence) -> handleMonsterDead(sentence));
+        dispatcher.register("MonsterHit", (conn, sentence) -> huntLoop.execute(() -> handleMonsterHit(sentence)));
+        dispatcher.register("BulletUpdate", (conn, sentence) -> broadcastToMap("hunt", sentence));
+        dispatcher.register("ScoreUpdate", (conn, sentence) -> huntLoop.execute(() -> handleScoreUpdate(sentence)));
+    }
+
+    /**
+     * @return number of packets received per command since the server started
+     */
+    public Map<String, Long> getCommandCounters() {
+        return dispatcher.counters();
+    }
+
+    /**
+     * @return equipped skin cache hits, misses and hit ratio
+     */
+    public Map<String, Long> getSkinCacheMetrics() {
+        return shopDAO.getSkinCache().metrics();
+    }
+
+    /**
+     * @return write-behind queue depth and flush latencies
+     */
+    public Map<String, Long> getWriteBehindMetrics() {
+        return WriteBehindQueue.get().metrics();
     }
 
     private void handleLogin(WebSocket conn, String sentence) {
@@ -167,24 +253,24 @@ public class WebSocketGameServer extends WebSocketServer {
         String username = parts[1];
         String password = parts[2];
 
-        String result = playerService.login(username, password);
-        String msg = result.substring(result.indexOf('|') + 1, result.length());
-
-        // Check if user is already logged in
-        for (ClientInfo clientInfo : playerOnline) {
-            if (clientInfo != null && clientInfo.getUsername().equals(username)) {
-                sendToClient(conn, protocol.LoginPacket("Failed", "User already logged in"));
-                return;
-            }
+        // Check if user is already logged in, before paying for a password check
+        if (playerOnline.contains(username)) {
+            sendToClient(conn, protocol.LoginPacket("Failed", "User already logged in"));
+            return;
         }
 
-        if (result.startsWith("Success")) {
-            System.out.println("Login Success: " + username);
-            sendToClient(conn, protocol.LoginPacket("Success", msg));
-        } else {
-            System.out.println("Login Failed: " + username);
-            sendToClient(conn, protocol.LoginPacket("Failed", msg));
-        }
+        // BCrypt and the user lookup run on the DB pool, the reply is sent from there
+        playerService.loginAsync(username, password).thenAccept(result -> {
+            String msg = result.substring(result.indexOf('|') + 1, result.length());
+
+            if (result.startsWith("Success")) {
+                System.out.println("Login Success: " + username);
+                sendToClient(conn, protocol.LoginPacket("Success", msg));
+            } else {
+                System.out.println("Login Failed: " + username);
+                sendToClient(conn, protocol.LoginPacket("Failed", msg));
+            }
+        }).exceptionally(WebSocketGameServer::logFailure);
     }
 
     private void handleRegister(WebSocket conn, String sentence) {
@@ -193,21 +279,29 @@ public class WebSocketGameServer extends WebSocketServer {
         String password = parts[2];
         String email = parts[3];
 
-        String result = playerService.register(username, password, email);
-        int posResult = result.indexOf('|');
-        String msg = result.substring(posResult + 1, result.length());
+        playerService.registerAsync(username, password, email).thenAccept(result -> {
+            int posResult = result.indexOf('|');
+            String msg = result.substring(posResult + 1, result.length());
 
-        if (result.startsWith("Success")) {
-            sendToClient(conn, protocol.registerPacket("Success", msg));
-            System.out.println("Register Success: " + username);
-        } else {
-            sendToClient(conn, protocol.registerPacket("Failed", msg));
-            System.out.println("Register Failed: " + username);
-        }
+            if (result.startsWith("Success")) {
+                sendToClient(conn, protocol.registerPacket("Success", msg));
+                System.out.println("Register Success: " + username);
+            } else {
+                sendToClient(conn, protocol.registerPacket("Failed", msg));
+                System.out.println("Register Failed: " + username);
+            }
+        }).exceptionally(WebSocketGameServer::logFailure);
     }
 
     private void handleHello(WebSocket conn, String sentence, int defaultX, int defaultY) {
         String username = sentence.substring(5, sentence.length());
+
+        // Names the game tables cannot store would fail every write of the player's results
+        if (username.isEmpty() || username.length() > PlayerService.MAX_USERNAME_LENGTH) {
+            sendToClient(conn, "HelloFailed,Invalid username");
+            System.out.println("Rejected player with invalid username: " + username);
+            return;
+        }
         
         // Check if server is full
         if (playerOnline.size() >= MAX_PLAYERS) {
@@ -219,55 +313,95 @@ public class WebSocketGameServer extends WebSocketServer {
         // Store the authenticated username for this connection
         connectionAuthMap.put(conn, username);
         
-        // Auto-give default skin to user if they don't have any
-        shopDAO.giveDefaultSkin(username);
+        // Coins, points, skins and stats in one query; gives the default skin if the player has none
+        CompletableFuture<PlayerSession> loaded = sessionDAO.loadAsync(username);
+
+        // Other players' skins for the new player, cached when they joined
+        Map<String, CompletableFuture<String>> otherSkins = new LinkedHashMap<>();
+        for (ClientInfo player : playerOnline.snapshot()) {
+            if (!player.getUsername().equals(username)) {
+                otherSkins.put(player.getUsername(), shopDAO.getEquippedSkinAsync(player.getUsername()));
+            }
+        }
 
-        sendToClient(conn, protocol.IDPacket(playerOnline.size() + 1, username));
-        
-        // Get player's equipped skin
-        String equippedSkin = shopDAO.getEquippedSkin(username);
-        
-        // Send NewClient with skin info to other players
-        broadcastMessage(protocol.NewClientPacket(username, defaultX, defaultY, -1, playerOnline.size() + 1, "lobby"));
-        
-        // Broadcast new player's skin so other players can see it
-        broadcastMessage("ChangeSkin," + username + "," + equippedSkin);
+        List<CompletableFuture<?>> lookups = new ArrayList<>(otherSkins.values());
+        lookups.add(loaded);
 
-        System.out.println(protocol.leaderBoardPacket(playerService.leaderBoard()));
-        sendToClient(conn, protocol.leaderBoardPacket(playerService.leaderBoard()));
+        // The player joins once every lookup is done, all of them ran on the DB pool
+        CompletableFuture.allOf(lookups.toArray(new CompletableFuture<?>[0])).thenRun(() -> {
+            if (!conn.isOpen()) {
+                shopDAO.getSkinCache().evict(username);
+                return;
+            }
 
-        sendAllClientsInMap(conn, "lobby");
-        
-        // Send other players' skins to the new player
-        for (ClientInfo player : playerOnline) {
-            if (player != null && !player.getUsername().equals(username)) {
-                String playerSkin = shopDAO.getEquippedSkin(player.getUsername());
-                sendToClient(conn, "ChangeSkin," + player.getUsername() + "," + playerSkin);
+            PlayerSession session = loaded.join();
+            if (session == null) {
+                // Unknown user or database down: an empty session would show the player a wiped account
+                connectionAuthMap.remove(conn, username);
+                sendToClient(conn, "HelloFailed,Could not load account");
+                System.err.println("Rejected player " + username + ": session could not be loaded");
+                return;
+            }
+            // Points are kept current by the leaderboard, queued updates included
+            session.setPoints(playerService.pointsOf(username));
+            String equippedSkin = session.getEquippedSkin();
+            shopDAO.getSkinCache().put(username, equippedSkin);
+
+            sendToClient(conn, protocol.IDPacket(playerOnline.size() + 1, username));
+
+            // Send NewClient with skin info to other players
+            broadcastMessage(protocol.NewClientPacket(username, defaultX, defaultY, -1, playerOnline.size() + 1, "lobby"));
+
+            // Broadcast new player's skin so other players can see it
+            broadcastMessage(protocol.changeSkinPacket(username, equippedSkin));
+
+            sendLeaderBoardToClient(conn);
+
+            sendAllClientsInMap(conn, "lobby");
+
+            for (Map.Entry<String, CompletableFuture<String>> entry : otherSkins.entrySet()) {
+                sendToClient(conn, protocol.changeSkinPacket(entry.getKey(), entry.getValue().join()));
             }
-        }
 
-        playerOnline.add(new ClientInfo(conn, username, defaultX, defaultY, -1, "lobby"));
+            ClientInfo newPlayer = new ClientInfo(conn, username, defaultX, defaultY, -1, "lobby");
+            newPlayer.setSession(session);
+            ClientInfo replaced = playerOnline.add(newPlayer);
+            if (replaced != null) {
+                // Same username logged in again: the old entry must stop receiving room broadcasts
+                rooms.remove(replaced);
+            }
+            rooms.join("lobby", newPlayer);
+
+            // The connection may have closed while the player was being added
+            if (!conn.isOpen() && playerOnline.remove(newPlayer)) {
+                rooms.remove(newPlayer);
+                shopDAO.getSkinCache().evict(username);
+            }
+        }).exceptionally(WebSocketGameServer::logFailure);
     }
 
-    private void handleUpdate(String sentence) {
-        String[] parts = sentence.split(",");
-        String username = parts[1];
-        int x = Integer.parseInt(parts[2]);
-        int y = Integer.parseInt(parts[3]);
-        int dir = Integer.parseInt(parts[4]);
-
-        playerOnline.stream()
-                .filter(player -> player.getUsername().equals(username))
-                .findFirst()
-                .ifPresent(player -> {
-                    player.setPosX(x);
-                    player.setPosY(y);
-                    player.setDirection(dir);
-                });
-
-        playerOnline.stream()
-                .filter(player -> !player.getUsername().equals(username))
-                .forEach(player -> sendToClient(player.getWebSocket(), sentence));
+    private void handleUpdate(WebSocket conn, String sentence) {
+        // Update,username,x,y,dir - parsed in place, this is the most frequent packet
+        PacketReader reader = PacketReader.of(sentence, "Update,".length());
+
+        // The sender is normally the player attached to this connection,
+        // so the username is only compared, never copied
+        reader.next();
+        ClientInfo sender = playerOnline.get(conn);
+        if (sender == null || !reader.fieldEquals(sender.getUsername())) {
+            sender = playerOnline.get(reader.fieldString());
+        }
+        int x = reader.nextInt();
+        int y = reader.nextInt();
+        int dir = reader.nextInt();
+
+        if (sender != null) {
+            sender.setPosX(x);
+            sender.setPosY(y);
+            sender.setDirection(dir);
+        }
+
+        broadcastMessageExcept(sentence, sender);
     }
 
     private void handleTeleportToMap(String sentence) {
@@ -277,16 +411,14 @@ public class WebSocketGameServer extends WebSocketServer {
         int x = Integer.parseInt(parts[3]);
         int y = Integer.parseInt(parts[4]);
 
-        ClientInfo p = null;
-        for (ClientInfo player : playerOnline) {
-            if (player != null && player.getUsername().equals(username)) {
-                player.setPosX(x);
-                player.setPosY(y);
-                player.setMap(map);
-                p = player;
-                break;
-            }
+        ClientInfo p = playerOnline.get(username);
+        if (p == null) {
+            // Unknown or already replaced by a reconnect
+            return;
         }
+        p.setPosX(x);
+        p.setPosY(y);
+        rooms.move(p, map);
 
         broadcastMessage(protocol.NewClientPacket(username, x, y, -1, playerOnline.size() + 1, p.getMap()));
         sendAllClientsInMap(p.getWebSocket(), map);
@@ -302,48 +434,42 @@ public class WebSocketGameServer extends WebSocketServer {
         String broadcastSentence = "TeleportToMap," + username + "," + map + "," + x + "," + y;
         broadcastMessage(broadcastSentence);
         
-        // Monster Hunt Timer Logic
+        // Monster Hunt Timer Logic - runs on the hunt loop which owns the hunt state
+        WebSocket playerConn = p.getWebSocket();
         if (map.equals("hunt")) {
-            startHuntTimer();
-            
-            // Send all existing monsters to the new player
-            for (MonsterData m : huntMonsters.values()) {
-                if (m.alive) {
-                    sendToClient(p.getWebSocket(), "SpawnMonster," + m.id + "," + m.type + "," + m.x + "," + m.y);
+            huntLoop.execute(() -> {
+                startHuntTimer();
+
+                // Send all existing monsters to the new player
+                for (int i = 0; i < huntMonsters.count(); i++) {
+                    int slot = huntMonsters.slotAt(i);
+                    sendToClient(playerConn, protocol.spawnMonsterPacket(huntMonsters.id(slot),
+                            huntMonsters.type(slot), huntMonsters.x(slot), huntMonsters.y(slot)));
                 }
-            }
-            
-            // Also send current time and wave
-            if (huntActive) {
-                sendToClient(p.getWebSocket(), "HuntTime," + huntTimeRemaining);
-                int wave = (180 - huntTimeRemaining) / 45 + 1;
-                sendToClient(p.getWebSocket(), "HuntWave," + wave);
-            }
+
+                // Also send current time and wave
+                if (huntActive) {
+                    sendToClient(playerConn, protocol.huntTimePacket(huntTimeRemaining));
+                    int wave = (180 - huntTimeRemaining) / 45 + 1;
+                    sendToClient(playerConn, protocol.huntWavePacket(wave));
+                }
+            });
         } else {
             // Check if anyone is left in hunt
-            boolean anyInHunt = false;
-            for (ClientInfo player : playerOnline) {
-                if (player.getMap().equals("hunt")) {
-                    anyInHunt = true;
-                    break;
+            huntLoop.execute(() -> {
+                if (rooms.isEmpty("hunt")) {
+                    stopHuntTimer();
                 }
-            }
-            if (!anyInHunt) {
-                stopHuntTimer();
-            }
+            });
         }
     }
 
     private void handleEnterMaze(String sentence) {
         String username = sentence.substring(9);
 
-        ClientInfo p = null;
-        for (ClientInfo player : playerOnline) {
-            if (player != null && player.getUsername().equals(username)) {
-                p = player;
-                player.setMap("Loading");
-                break;
-            }
+        ClientInfo p = playerOnline.get(username);
+        if (p != null) {
+            rooms.move(p, "Loading");
         }
         if (winMaze) {
             mazeGen = new MazeGen(10, 20);
@@ -355,7 +481,7 @@ public class WebSocketGameServer extends WebSocketServer {
         } else {
             // Nếu maze đang active, gửi thời gian hiện tại cho người chơi mới
             if (mazeActive && p != null) {
-                sendToClient(p.getWebSocket(), "MazeTime," + mazeTimeRemaining);
+                sendToClient(p.getWebSocket(), protocol.mazeTimePacket(mazeTimeRemaining));
             }
         }
 
@@ -367,13 +493,7 @@ public class WebSocketGameServer extends WebSocketServer {
         String username = sentence.substring(7);
 
         // Find winner
-        ClientInfo p = null;
-        for (ClientInfo player : playerOnline) {
-            if (player != null && player.getUsername().equals(username)) {
-                p = player;
-                break;
-            }
-        }
+        ClientInfo p = playerOnline.get(username);
 
         assert p != null;
         
@@ -381,8 +501,9 @@ public class WebSocketGameServer extends WebSocketServer {
         broadcastMessage("MazeWin," + username);
         
         // Add points
-        playerService.updatePoint(username, 50);
-        sendLeaderBoardToAllClient();
+        playerService.updatePointAsync(username, 50)
+                .thenRun(this::sendLeaderBoardToAllClient)
+                .exceptionally(WebSocketGameServer::logFailure);
         
         // Teleport everyone else (LOSERS) to lobby immediately
         // The winner will be teleported when they send TeleportToMap (on pressing Space)
@@ -395,11 +516,11 @@ public class WebSocketGameServer extends WebSocketServer {
     }
     
     public void teleportAllOtherPlayersInMapToMap(String map, String map2, String excludeUsername) {
-        for (ClientInfo player : playerOnline) {
-            // Check if player is in the source map AND is not the excluded user
-            if (player.getMap().equals(map) && !player.getUsername().equals(excludeUsername)) {
+        for (ClientInfo player : new ArrayList<>(rooms.members(map))) {
+            // Skip the excluded user
+            if (!player.getUsername().equals(excludeUsername)) {
                 
-                player.setMap(map2);
+                rooms.move(player, map2);
                 // FIX: Update server-side coordinates to lobby spawn so future getX()/getY() calls return correct values
                 player.setPosX(1645);
                 player.setPosY(754);
@@ -424,50 +545,47 @@ public class WebSocketGameServer extends WebSocketServer {
         String playerShot = parts[1];
         String playerHit = parts[2];
 
-        for (ClientInfo player : playerOnline) {
-            if (player != null && player.getUsername().equals(playerHit) && player.isAlive) {
-                playerService.updatePoint(playerShot, 10);
-                playerService.updatePoint(playerHit, -10);
-                sendLeaderBoardToAllClient();
-                broadcastMessage(sentence);
-                break;
-            }
-        }
-        for (ClientInfo player : playerOnline) {
-            if (player != null && player.getUsername().equals(playerHit)) {
-                player.isAlive = false;
-                break;
-            }
+        ClientInfo player = playerOnline.get(playerHit);
+        if (player == null) return;
+
+        if (player.isAlive) {
+            CompletableFuture.allOf(
+                    playerService.updatePointAsync(playerShot, 10),
+                    playerService.updatePointAsync(playerHit, -10))
+                    .thenRun(this::sendLeaderBoardToAllClient)
+                    .exceptionally(WebSocketGameServer::logFailure);
+            broadcastMessage(sentence);
         }
+        player.isAlive = false;
     }
 
     private void handleRespawn(String sentence) {
         String username = sentence.substring(7);
 
-        for (ClientInfo player : playerOnline) {
-            if (player != null && player.getUsername().equals(username)) {
-                player.isAlive = true;
-                break;
-            }
+        ClientInfo player = playerOnline.get(username);
+        if (player != null) {
+            player.isAlive = true;
         }
     }
 
     private void handleRemove(String sentence) {
         int id = Integer.parseInt(sentence.substring(6));
         broadcastMessage(sentence);
-        playerOnline.remove(id);
+        ClientInfo player = playerOnline.snapshot().get(id);
+        playerOnline.remove(player);
+        rooms.remove(player);
+        shopDAO.getSkinCache().evict(player.getUsername());
     }
 
     private void handleExit(String sentence) {
         String username = sentence.substring(4);
         System.out.println("Exit: " + username);
 
-        for (ClientInfo player : playerOnline) {
-            if (player != null && player.getUsername().equals(username)) {
-                playerOnline.remove(player);
-                connectionAuthMap.remove(player.getWebSocket());
-                break;
-            }
+        ClientInfo player = playerOnline.get(username);
+        if (player != null && playerOnline.remove(player)) {
+            rooms.remove(player);
+            connectionAuthMap.remove(player.getWebSocket());
+            shopDAO.getSkinCache().evict(username);
         }
         broadcastMessage(sentence);
     }
@@ -492,23 +610,16 @@ public class WebSocketGameServer extends WebSocketServer {
         // Calculate coins to add (gold earned + kill bonus)
         int coinsToAdd = finalScore + (kills * 5); // Full gold earned + 5 coins per kill
         
-        if (pointsToAdd > 0) {
-            playerService.updatePoint(username, pointsToAdd);
-        }
-        
-        // Always add coins if player earned any
-        if (coinsToAdd > 0) {
-            shopDAO.addCoins(username, coinsToAdd);
-        }
-        
         // Save to database
-        gameHistoryDAO.savePvpGameResult(username, finalScore, kills, pointsToAdd);
+        PlayerSession session = sessionOf(username);
+        if (session != null) {
+            session.recordGame("pvp", finalScore, kills, 0, false);
+        }
+        gameHistoryDAO.savePvpGameResultAsync(username, finalScore, kills, pointsToAdd)
+                .exceptionally(WebSocketGameServer::logFailure);
         
         System.out.println("ScoreBattle End - " + username + ": +" + pointsToAdd + " points, +" + coinsToAdd + " coins (from " + finalScore + " gold, " + kills + " kills)");
-        sendLeaderBoardToAllClient();
-        
-        // Send updated coin balance to client
-        sendToClient(conn, protocol.playerCoinsPacket(shopDAO.getPlayerCoins(username)));
+        rewardAndReply(conn, username, pointsToAdd, coinsToAdd);
     }
     
     /**
@@ -530,16 +641,12 @@ public class WebSocketGameServer extends WebSocketServer {
             broadcastMessage("MazeWin," + username);
             
             // Move winner to lobby on server side
-            ClientInfo winner = null;
-            for (ClientInfo p : playerOnline) {
-                if (p.getUsername().equals(username)) {
-                    p.setMap("lobby");
-                    // FIX: Update winner's position too so they appear correctly to others
-                    p.setPosX(1645);
-                    p.setPosY(754);
-                    winner = p;
-                    break;
-                }
+            ClientInfo winner = playerOnline.get(username);
+            if (winner != null) {
+                rooms.move(winner, "lobby");
+                // FIX: Update winner's position too so they appear correctly to others
+                winner.setPosX(1645);
+                winner.setPosY(754);
             }
             
             if (winner != null) {
@@ -564,159 +671,246 @@ public class WebSocketGameServer extends WebSocketServer {
             coinsToAdd += 25; // Bonus coins for winning
         }
         
-        if (pointsToAdd > 0) {
-            playerService.updatePoint(username, pointsToAdd);
-        }
-        
-        // Always add coins if player earned any
-        if (coinsToAdd > 0) {
-            shopDAO.addCoins(username, coinsToAdd);
-        }
-        
         // Save to database
-        gameHistoryDAO.saveMazeGameResult(username, score, coinsCollected, won, pointsToAdd);
+        PlayerSession session = sessionOf(username);
+        if (session != null) {
+            session.recordGame("maze", score, 0, coinsCollected, won);
+        }
+        gameHistoryDAO.saveMazeGameResultAsync(username, score, coinsCollected, won, pointsToAdd)
+                .exceptionally(WebSocketGameServer::logFailure);
         
         System.out.println("Maze End - " + username + ": +" + pointsToAdd + " points, +" + coinsToAdd + " coins (score: " + score + ", coins: " + coinsCollected + ", won: " + won + ")");
-        sendLeaderBoardToAllClient();
-        
-        // Send updated coin balance to client
-        sendToClient(conn, protocol.playerCoinsPacket(shopDAO.getPlayerCoins(username)));
+        rewardAndReply(conn, username, pointsToAdd, coinsToAdd);
     }
 
-    private void handleGetItems(WebSocket conn) {
-        List<String> items = fetchItemsFromDatabase();
-        for (String item : items) {
-            sendToClient(conn, item);
+    /**
+     * Add points and coins, then refresh the leaderboard for everyone
+     * and send the new coin balance to the player.
+     * Online players' balances come from their session; the database writes are queued.
+     */
+    private CompletableFuture<Void> rewardAndReply(WebSocket conn, String username, int pointsToAdd, int coinsToAdd) {
+        PlayerSession session = sessionOf(username);
+        if (session != null) {
+            // Only rewards count, like the database path: the client cannot take points or coins away
+            if (pointsToAdd > 0) {
+                session.addPoints(pointsToAdd);
+                playerService.updatePoint(username, pointsToAdd);
+            }
+            int balance = session.getCoins();
+            if (coinsToAdd > 0) {
+                balance = session.addCoins(coinsToAdd);
+                shopDAO.addCoins(username, coinsToAdd);
+            }
+            sendLeaderBoardToAllClient();
+            sendToClient(conn, protocol.playerCoinsPacket(balance));
+            return CompletableFuture.completedFuture(null);
         }
-        sendToClient(conn, ""); // End of items
+
+        CompletableFuture<?> points = pointsToAdd > 0
+                ? playerService.updatePointAsync(username, pointsToAdd)
+                : CompletableFuture.completedFuture(null);
+        // Always add coins if player earned any
+        CompletableFuture<?> coins = coinsToAdd > 0
+                ? shopDAO.addCoinsAsync(username, coinsToAdd)
+                : CompletableFuture.completedFuture(null);
+
+        return CompletableFuture.allOf(points, coins)
+                .thenCompose(v -> shopDAO.getPlayerCoinsAsync(username))
+                .thenAccept(balance -> sendToClient(conn, protocol.playerCoinsPacket(balance)))
+                .exceptionally(WebSocketGameServer::logFailure);
+    }
+
+    /**
+     * @return the session of an online player, or null
+     */
+    private PlayerSession sessionOf(String username) {
+        ClientInfo player = playerOnline.get(username);
+        return player != null ? player.getSession() : null;
+    }
+
+    /**
+     * Log a failed async DB call, nothing else waits on these futures
+     */
+    private static <T> T logFailure(Throwable e) {
+        System.err.println("Async database task failed: " + e.getMessage());
+        e.printStackTrace();
+        return null;
+    }
+
+    // Legacy item shop: the whole list goes out in one frame from the cached catalog
+    private void handleGetItems(WebSocket conn) {
+        itemDAO.getCatalogAsync()
+                .thenAccept(catalog -> sendToClient(conn, catalog.frame(protocol::itemsListPacket)))
+                .exceptionally(WebSocketGameServer::logFailure);
     }
 
     private void handleBuyItem(WebSocket conn, String sentence) {
         String[] parts = sentence.split(",");
         int userId = Integer.parseInt(parts[1]);
         int itemId = Integer.parseInt(parts[2]);
-        String result = buyItem(userId, itemId);
-        sendToClient(conn, result);
+        itemDAO.buyItemAsync(userId, itemId)
+                .thenAccept(result -> sendToClient(conn, result))
+                .exceptionally(WebSocketGameServer::logFailure);
     }
 
-    private List<String> fetchItemsFromDatabase() {
-        List<String> items = new ArrayList<>();
-        try (Connection connection = DriverManager.getConnection("jdbc:mysql://localhost:3306/game_shop", "root", "password");
-             Statement statement = connection.createStatement();
-             ResultSet resultSet = statement.executeQuery("SELECT id, name, price FROM items")) {
-
-            while (resultSet.next()) {
-                int id = resultSet.getInt("id");
-                String name = resultSet.getString("name");
-                int price = resultSet.getInt("price");
-                items.add(id + ": " + name + " - " + price + " coins");
-            }
-        } catch (SQLException e) {
-            e.printStackTrace();
+    public void teleportAllPlayerInMapToMap(String map, String map2) {
+        // Copy the members first since moving a player mutates the source room
+        for (ClientInfo player : new ArrayList<>(rooms.members(map))) {
+            rooms.move(player, map2);
+            // FIX: Update coordinates for this method too
+            player.setPosX(1645);
+            player.setPosY(754);
+
+            sendToClient(player.getWebSocket(), protocol.teleportPacket(player.getUsername(), map2, 1645, 754));
+            broadcastMessage(protocol.NewClientPacket(player.getUsername(), 1645, 754, -1, playerOnline.size() + 1, player.getMap()));
+            sendAllClientsInMap(player.getWebSocket(), map2);
+            // Sync skins for teleported player
+            syncSkinsOnJoinMap(player, map2);
         }
-        return items;
     }
 
-    private String buyItem(int userId, int itemId) {
-        try (Connection connection = DriverManager.getConnection("jdbc:mysql://localhost:3306/game_shop", "root", "password")) {
-            PreparedStatement checkBalanceStmt = connection.prepareStatement("SELECT balance FROM users WHERE id = ?");
-            checkBalanceStmt.setInt(1, userId);
-            ResultSet balanceResult = checkBalanceStmt.executeQuery();
-            if (balanceResult.next()) {
-                int balance = balanceResult.getInt("balance");
-
-                PreparedStatement getItemPriceStmt = connection.prepareStatement("SELECT price FROM items WHERE id = ?");
-                getItemPriceStmt.setInt(1, itemId);
-                ResultSet priceResult = getItemPriceStmt.executeQuery();
-                if (priceResult.next()) {
-                    int price = priceResult.getInt("price");
-
-                    if (balance >= price) {
-                        PreparedStatement updateBalanceStmt = connection.prepareStatement("UPDATE users SET balance = balance - ? WHERE id = ?");
-                        updateBalanceStmt.setInt(1, price);
-                        updateBalanceStmt.setInt(2, userId);
-                        updateBalanceStmt.executeUpdate();
-
-                        PreparedStatement addItemStmt = connection.prepareStatement("INSERT INTO userItems (user_id, item_id) VALUES (?, ?)");
-                        addItemStmt.setInt(1, userId);
-                        addItemStmt.setInt(2, itemId);
-                        addItemStmt.executeUpdate();
-
-                        return "Purchase successful!";
-                    } else {
-                        return "Insufficient balance!";
-                    }
-                } else {
-                    return "Item not found!";
-                }
-            } else {
-                return "User not found!";
+    /**
+     * Send a message to every online player.
+     * The frame is encoded once and the same bytes are written to every connection.
+     */
+    public void broadcastMessage(String message) {
+        fanOut(message, playerOnline.connections());
+    }
+
+    /**
+     * Send a message to every online player except one, encoding the frame once
+     * @param message the message to send
+     * @param except the player to skip, usually the sender
+     */
+    public void broadcastMessageExcept(String message, ClientInfo except) {
+        if (except == null || except.getWebSocket() == null) {
+            broadcastMessage(message);
+            return;
+        }
+        List<WebSocket> connections = playerOnline.connections();
+        List<WebSocket> recipients = new ArrayList<>(connections.size());
+        for (WebSocket conn : connections) {
+            if (conn != except.getWebSocket()) {
+                recipients.add(conn);
             }
-        } catch (SQLException e) {
-            e.printStackTrace();
-            return "Purchase failed!";
         }
+        fanOut(message, recipients);
     }
 
-    public void teleportAllPlayerInMapToMap(String map, String map2) {
-        for (ClientInfo player : playerOnline) {
-            if (player.getMap().equals(map)) {
-                player.setMap(map2);
-                // FIX: Update coordinates for this method too
-                player.setPosX(1645);
-                player.setPosY(754);
-                
-                sendToClient(player.getWebSocket(), protocol.teleportPacket(player.getUsername(), map2, 1645, 754));
-                broadcastMessage(protocol.NewClientPacket(player.getUsername(), 1645, 754, -1, playerOnline.size() + 1, player.getMap()));
-                sendAllClientsInMap(player.getWebSocket(), map2);
-                // Sync skins for teleported player
-                syncSkinsOnJoinMap(player, map2);
+    public void sendToClient(WebSocket conn, String message) {
+        if (conn != null && conn.isOpen()) {
+            if (binaryClients.contains(conn)) {
+                ByteBuffer frame = BinaryProtocol.encode(message);
+                if (frame != null) {
+                    conn.send(frame);
+                    return;
+                }
             }
+            conn.send(message);
         }
     }
 
-    public void broadcastMessage(String message) {
-        for (ClientInfo clientInfo : playerOnline) {
-            if (clientInfo != null && clientInfo.getWebSocket() != null && clientInfo.getWebSocket().isOpen()) {
-                sendToClient(clientInfo.getWebSocket(), message);
+    /**
+     * Send one message to many connections. Each codec's frame is encoded once:
+     * text clients share the text frame, binary clients share the binary frame.
+     */
+    private void fanOut(String message, Collection<WebSocket> recipients) {
+        if (binaryClients.isEmpty()) {
+            broadcast(message, recipients);
+            return;
+        }
+        ByteBuffer frame = BinaryProtocol.encode(message);
+        if (frame == null) {
+            broadcast(message, recipients);
+            return;
+        }
+        List<WebSocket> textRecipients = new ArrayList<>(recipients.size());
+        List<WebSocket> binaryRecipients = new ArrayList<>();
+        for (WebSocket conn : recipients) {
+            if (binaryClients.contains(conn)) {
+                binaryRecipients.add(conn);
+            } else {
+                textRecipients.add(conn);
             }
         }
+        if (!textRecipients.isEmpty()) {
+            broadcast(message, textRecipients);
+        }
+        if (!binaryRecipients.isEmpty()) {
+            broadcast(frame, binaryRecipients);
+        }
     }
 
-    public void sendToClient(WebSocket conn, String message) {
-        if (conn != null && conn.isOpen()) {
-            conn.send(message);
+    /**
+     * Read a query parameter from a resource descriptor such as "/?codec=binary"
+     */
+    private static String queryParam(String resourceDescriptor, String name) {
+        if (resourceDescriptor == null) return null;
+        int query = resourceDescriptor.indexOf('?');
+        if (query < 0) return null;
+        for (String pair : resourceDescriptor.substring(query + 1).split("&")) {
+            int eq = pair.indexOf('=');
+            if (eq > 0 && pair.substring(0, eq).equals(name)) {
+                return pair.substring(eq + 1);
+            }
         }
+        return null;
     }
 
+    /**
+     * Schedule a leaderboard push. Pushes are coalesced and sent at most
+     * once per LEADERBOARD_INTERVAL_MS, and skipped if the top 20 did not change.
+     */
     public void sendLeaderBoardToAllClient() {
-        for (ClientInfo clientInfo : playerOnline) {
-            if (clientInfo != null && clientInfo.getWebSocket() != null) {
-                sendLeaderBoardToClient(clientInfo.getWebSocket());
-            }
-        }
+        leaderboardBroadcaster.markDirty();
     }
 
+    /**
+     * Send the last pushed leaderboard, the baseline for the diffs that follow
+     */
     public void sendLeaderBoardToClient(WebSocket conn) {
-        sendToClient(conn, protocol.leaderBoardPacket(playerService.leaderBoard()));
+        sendToClient(conn, leaderboardBroadcaster.lastFrame());
     }
 
-    public void sendAllClientsInMap(WebSocket conn, String map) {
-        for (int i = 0; i < playerOnline.size(); i++) {
-            if (playerOnline.get(i) != null && playerOnline.get(i).getMap().equals(map)) {
-                String username = playerOnline.get(i).getUsername();
-                int x = playerOnline.get(i).getX();
-                int y = playerOnline.get(i).getY();
-                int dir = playerOnline.get(i).getDir();
-                sendToClient(conn, protocol.NewClientPacket(username, x, y, dir, i + 1, map));
-                // Force sync position for static players (fixes invisible bug)
-                sendToClient(conn, protocol.UpdatePacket(username, x, y, dir));
+    /**
+     * Send one leaderboard push: the diff to clients that asked for it, the full frame to the others
+     */
+    private void publishLeaderBoard(String fullFrame, String diffFrame) {
+        if (leaderboardDiffClients.isEmpty()) {
+            broadcastMessage(fullFrame);
+            return;
+        }
+        List<WebSocket> fullRecipients = new ArrayList<>();
+        List<WebSocket> diffRecipients = new ArrayList<>();
+        for (WebSocket conn : playerOnline.connections()) {
+            if (leaderboardDiffClients.contains(conn)) {
+                diffRecipients.add(conn);
+            } else {
+                fullRecipients.add(conn);
             }
         }
+        fanOut(fullFrame, fullRecipients);
+        fanOut(diffFrame, diffRecipients);
+    }
+
+    public void sendAllClientsInMap(WebSocket conn, String map) {
+        // The id is the player's position in the online list, the same for every viewer
+        List<ClientInfo> players = playerOnline.snapshot();
+        for (int i = 0; i < players.size(); i++) {
+            ClientInfo player = players.get(i);
+            if (!map.equals(player.getMap())) continue;
+            String username = player.getUsername();
+            int x = player.getX();
+            int y = player.getY();
+            int dir = player.getDir();
+            sendToClient(conn, protocol.NewClientPacket(username, x, y, dir, i + 1, map));
+            // Force sync position for static players (fixes invisible bug)
+            sendToClient(conn, protocol.UpdatePacket(username, x, y, dir));
+        }
     }
 
-    public ArrayList<ClientInfo> getPlayerOnline() {
-        return playerOnline;
+    public List<ClientInfo> getPlayerOnline() {
+        return playerOnline.snapshot();
     }
 
     public void startServer() {
@@ -725,32 +919,58 @@ public class WebSocketGameServer extends WebSocketServer {
 
     public void stopServer() throws IOException, InterruptedException {
         stop();
+        huntLoop.shutdown();
+        mazeLoop.shutdown();
+        leaderboardBroadcaster.stop();
+        // Write the queued points, coins and game results before exiting
+        WriteBehindQueue.get().shutdown();
     }
 
     // Shop handling - Skin Shop
+    // Reads come from the player's session, writes go to the database and then the session
     private void handleShopRequest(WebSocket conn, String sentence) {
         String[] parts = sentence.split(",");
         if (parts.length < 2) return;
         
         String action = parts[1];
-        String username = connectionAuthMap.get(conn);
+        ClientInfo player = playerOnline.get(conn);
+        PlayerSession session = player != null ? player.getSession() : null;
         
-        if (username == null) {
+        if (session == null) {
             sendToClient(conn, "Shop,Error,Not logged in");
             return;
         }
+        String username = session.getUsername();
         
         switch (action) {
             case "GetSkins":
-                // Get all skins
-                List<ShopDAO.SkinItem> skins = shopDAO.getAllSkins();
-                sendToClient(conn, protocol.skinsListPacket(skins));
+                // Get all skins: Shop,GetSkins[,cachedVersion]
+                long cachedVersion = -1;
+                if (parts.length >= 3) {
+                    try {
+                        cachedVersion = Long.parseLong(parts[2]);
+                    } catch (NumberFormatException ignored) {
+                        // Treat as no cached catalog
+                    }
+                }
+                long knownVersion = cachedVersion;
+                boolean versioned = parts.length >= 3;
+                shopDAO.getSkinCatalogAsync().thenAccept(catalog -> {
+                    if (knownVersion == catalog.getVersion() && catalog.getVersion() != 0) {
+                        sendToClient(conn, protocol.skinsNotModifiedPacket(catalog.getVersion()));
+                        return;
+                    }
+                    sendToClient(conn, catalog.frame(protocol::skinsListPacket));
+                    if (versioned) {
+                        // Only clients that cache the catalog know this packet
+                        sendToClient(conn, protocol.skinsVersionPacket(catalog.getVersion()));
+                    }
+                }).exceptionally(WebSocketGameServer::logFailure);
                 break;
                 
             case "GetCoins":
                 // Get player's coins
-                int coins = shopDAO.getPlayerCoins(username);
-                sendToClient(conn, protocol.playerCoinsPacket(coins));
+                sendToClient(conn, protocol.playerCoinsPacket(session.getCoins()));
                 break;
                 
             case "Buy":
@@ -758,18 +978,23 @@ public class WebSocketGameServer extends WebSocketServer {
                 if (parts.length >= 3) {
                     try {
                         int skinId = Integer.parseInt(parts[2]);
-                        String result = shopDAO.buySkin(username, skinId);
-                        String[] resultParts = result.split("\\|");
-                        boolean success = resultParts[0].equals("Success");
-                        String message = resultParts.length > 1 ? resultParts[1] : result;
-                        int newBalance = shopDAO.getPlayerCoins(username);
-                        sendToClient(conn, protocol.buyResultPacket(success, message, newBalance));
-                        
-                        // If purchase successful, send updated player skins list
-                        if (success) {
-                            List<ShopDAO.PlayerSkin> playerSkins = shopDAO.getPlayerSkins(username);
-                            sendToClient(conn, protocol.playerSkinsPacket(playerSkins));
+                        if (session.ownsSkin(skinId)) {
+                            sendToClient(conn, protocol.buyResultPacket(false, "Already owned", session.getCoins()));
+                            break;
                         }
+                        shopDAO.buySkinAsync(username, skinId).thenAccept(result -> {
+                            if (!result.success) {
+                                sendToClient(conn, protocol.buyResultPacket(false, result.message, session.getCoins()));
+                                return;
+                            }
+                            // Debit as a delta: rewards added to the session during the purchase stay counted
+                            int balance = session.addCoins(-result.price);
+                            session.setOwnedSkins(result.ownedSkins);
+                            sendToClient(conn, protocol.buyResultPacket(true, result.message, balance));
+                            
+                            // If purchase successful, send updated player skins list
+                            sendToClient(conn, protocol.playerSkinsPacket(result.ownedSkins));
+                        }).exceptionally(WebSocketGameServer::logFailure);
                     } catch (NumberFormatException e) {
                         sendToClient(conn, protocol.buyResultPacket(false, "Invalid skin ID", 0));
                     }
@@ -778,8 +1003,7 @@ public class WebSocketGameServer extends WebSocketServer {
                 
             case "GetMySkins":
                 // Get player's owned skins
-                List<ShopDAO.PlayerSkin> playerSkins = shopDAO.getPlayerSkins(username);
-                sendToClient(conn, protocol.playerSkinsPacket(playerSkins));
+                sendToClient(conn, protocol.playerSkinsPacket(session.getOwnedSkins()));
                 break;
                 
             case "Equip":
@@ -787,18 +1011,24 @@ public class WebSocketGameServer extends WebSocketServer {
                 if (parts.length >= 3) {
                     try {
                         int skinId = Integer.parseInt(parts[2]);
-                        String result = shopDAO.equipSkin(username, skinId);
-                        String[] resultParts = result.split("\\|");
-                        boolean success = resultParts[0].equals("Success");
-                        
-                        if (success) {
-                            String skinFolder = resultParts[1];
-                            sendToClient(conn, protocol.equippedSkinPacket(skinFolder));
-                            // Broadcast to others that this player changed skin
-                            broadcastMessage("ChangeSkin," + username + "," + skinFolder);
-                        } else {
-                            sendToClient(conn, "Shop,Error," + resultParts[1]);
+                        if (!session.ownsSkin(skinId)) {
+                            sendToClient(conn, "Shop,Error,Don't own this skin");
+                            break;
                         }
+                        shopDAO.equipSkinAsync(username, skinId).thenAccept(result -> {
+                            String[] resultParts = result.split("\\|");
+                            boolean success = resultParts[0].equals("Success");
+                            
+                            if (success) {
+                                String skinFolder = resultParts[1];
+                                session.equip(skinId);
+                                sendToClient(conn, protocol.equippedSkinPacket(skinFolder));
+                                // Broadcast to others that this player changed skin
+                                broadcastMessage(protocol.changeSkinPacket(username, skinFolder));
+                            } else {
+                                sendToClient(conn, "Shop,Error," + resultParts[1]);
+                            }
+                        }).exceptionally(WebSocketGameServer::logFailure);
                     } catch (NumberFormatException e) {
                         sendToClient(conn, "Shop,Error,Invalid skin ID");
                     }
@@ -807,8 +1037,7 @@ public class WebSocketGameServer extends WebSocketServer {
                 
             case "GetEquipped":
                 // Get equipped skin folder
-                String equippedFolder = shopDAO.getEquippedSkin(username);
-                sendToClient(conn, protocol.equippedSkinPacket(equippedFolder));
+                sendToClient(conn, protocol.equippedSkinPacket(session.getEquippedSkin()));
                 break;
                 
             default:
@@ -825,44 +1054,38 @@ public class WebSocketGameServer extends WebSocketServer {
         huntTimeRemaining = 60;
         huntScores.clear();
         huntMonsters.clear();
-        nextMonsterId = 1;
         monsterUpdateTick = 0;
         
-        // Slow timer for game time and spawning (every 1 second)
-        huntTimer = new java.util.Timer();
-        huntTimer.scheduleAtFixedRate(new java.util.TimerTask() {
+        // Slow tick for game time and spawning (every 1 second)
+        huntTimer = huntLoop.scheduleTick(new Runnable() {
             @Override
             public void run() {
                 if (huntTimeRemaining > 0) {
                     huntTimeRemaining--;
                     // Broadcast time to all players in "hunt" map
-                    broadcastToMap("hunt", "HuntTime," + huntTimeRemaining);
+                    broadcastToMap("hunt", protocol.huntTimePacket(huntTimeRemaining));
                     
                     // Calculate and broadcast wave (every 45 seconds = 1 wave)
                     int wave = (180 - huntTimeRemaining) / 45 + 1;
-                    broadcastToMap("hunt", "HuntWave," + wave);
+                    broadcastToMap("hunt", protocol.huntWavePacket(wave));
                     
                     // Server-side Monster Spawning
-                    if (huntTimeRemaining % 3 == 0 && huntMonsters.size() < 15) { // Spawn every 3 seconds, max 15 monsters
-                        int x = 528 + (int)(Math.random() * 1296); // Within playable bounds
-                        int y = 528 + (int)(Math.random() * 1296);
-                        int type = (int)(Math.random() * 3); 
-                        int id = nextMonsterId++;
+                    if (huntTimeRemaining % 3 == 0 && huntMonsters.count() < MAX_HUNT_MONSTERS) { // Spawn every 3 seconds
+                        SplittableRandom random = huntMonsters.random();
+                        int x = 528 + random.nextInt(1296); // Within playable bounds
+                        int y = 528 + random.nextInt(1296);
+                        int type = random.nextInt(3);
                         
                         // Track monster on server
-
-                        MonsterData monster = new MonsterData(id, type, x, y);
-                        huntMonsters.put(id, monster);
-                        broadcastToMap("hunt", "SpawnMonster," + id + "," + type + "," + x + "," + y);
+                        int id = huntMonsters.spawn(type, x, y);
+                        broadcastToMap("hunt", protocol.spawnMonsterPacket(id, type, x, y));
                     }
-                    
-                    // Remove dead monsters from tracking
-                    huntMonsters.entrySet().removeIf(e -> !e.getValue().alive);
                 } else {
                     // End game
                     broadcastToMap("hunt", "HuntEnd");
                     
-                    // SAVE POINTS AND COINS
+                    // SAVE POINTS AND COINS - on the DB pool, the hunt loop keeps ticking
+                    List<CompletableFuture<Void>> rewards = new ArrayList<>();
                     if (!huntScores.isEmpty()) {
                         System.out.println("Saving Monster Hunt results for " + huntScores.size() + " players");
                         for (Map.Entry<String, Integer> entry : huntScores.entrySet()) {
@@ -874,72 +1097,94 @@ public class WebSocketGameServer extends WebSocketServer {
                             // 1:1 score to coins conversion
                             int coins = score;
                             
-                            if (points > 0) {
-                                playerService.updatePoint(username, points);
-                            }
-                            if (coins > 0) {
-                                shopDAO.addCoins(username, coins);
-                            }
+                            // Send update to client so they see new coin balance immediately
+                            ClientInfo p = playerOnline.get(username);
+                            rewards.add(rewardAndReply(p != null ? p.getWebSocket() : null, username, points, coins));
                             
                             // Save to specific MonsterHunt history if needed, or generic game history
                             // For now, using a simple log and updating the player's main stats
                             System.out.println("Saved Hunt for " + username + ": " + points + " points, " + coins + " coins");
                             
                             // Save detailed game history
-                            gameHistoryDAO.saveHuntGameResult(username, score, points);
-                            
-                            // Optional: Send update to client so they see new coin balance immediately
-                            for (ClientInfo p : playerOnline) {
-                                if (p.getUsername().equals(username)) {
-                                    sendToClient(p.getWebSocket(), protocol.playerCoinsPacket(shopDAO.getPlayerCoins(username)));
-                                    break;
-                                }
+                            PlayerSession session = sessionOf(username);
+                            if (session != null) {
+                                session.recordGame("hunt", score, 0, score, false);
                             }
+                            gameHistoryDAO.saveHuntGameResultAsync(username, score, points)
+                                    .exceptionally(WebSocketGameServer::logFailure);
                         }
                     }
                     
-                    sendLeaderBoardToAllClient();
+                    CompletableFuture.allOf(rewards.toArray(new CompletableFuture<?>[0]))
+                            .thenRun(WebSocketGameServer.this::sendLeaderBoardToAllClient)
+                            .exceptionally(WebSocketGameServer::logFailure);
                     stopHuntTimer();
                 }
             }
-        }, 1000, 1000);
+        }, 1000);
         
-        // Fast timer for monster AI and position broadcasts (every 33ms = ~30 FPS)
-        monsterTimer = new java.util.Timer();
-        monsterTimer.scheduleAtFixedRate(new java.util.TimerTask() {
+        // Fast tick for monster AI and position broadcasts (every 33ms = ~30 FPS)
+        monsterTimer = huntLoop.scheduleTick(new Runnable() {
             @Override
             public void run() {
                 if (!huntActive) return;
                 
-                // Update all monster AI (server-side movement)
-                for (MonsterData m : huntMonsters.values()) {
-                    if (m.alive) {
-                        m.updateAI(playerOnline);
-                    }
-                }
-                
-                // Broadcast monster positions every tick for smooth movement
-                for (MonsterData m : huntMonsters.values()) {
-                    if (m.alive) {
-                        broadcastToMap("hunt", "MonsterUpdate," + m.id + "," + m.x + "," + m.y + "," + m.health);
-                    }
+                long start = System.nanoTime();
+                tickMonsters();
+                long elapsed = System.nanoTime() - start;
+                lastMonsterTickNanos = elapsed;
+                maxMonsterTickNanos.accumulateAndGet(elapsed, Math::max);
+            }
+        }, MONSTER_TICK_MS); // Run every 33ms = ~30 FPS
+    }
+    
+    private void tickMonsters() {
+        // Update all monster AI (server-side movement), in parallel for large hunts
+        huntGrid.rebuild(rooms.members("hunt"), "hunt");
+        huntPaths.build(huntGrid.players());
+        // Only monsters that moved or were hit are sent
+        if (huntMonsters.update(huntGrid, huntPaths) == 0) return;
+        
+        // Broadcast monster positions every tick for smooth movement
+        if (MONSTER_SNAPSHOT) {
+            broadcastToMap("hunt", protocol.monsterSnapshotPacket(huntMonsters));
+        } else {
+            for (int i = 0; i < huntMonsters.count(); i++) {
+                int slot = huntMonsters.slotAt(i);
+                if (huntMonsters.isDirty(slot)) {
+                    broadcastToMap("hunt", protocol.monsterUpdatePacket(huntMonsters.id(slot),
+                            huntMonsters.x(slot), huntMonsters.y(slot), huntMonsters.health(slot)));
                 }
             }
-        }, 33, 33); // Run every 33ms = ~30 FPS
+        }
+        huntMonsters.clearDirty();
+    }
+    
+    /**
+     * @return cost of the last and slowest monster ticks and the headroom left in the 33 ms budget
+     */
+    public Map<String, Long> getHuntTickMetrics() {
+        long budgetMicros = MONSTER_TICK_MS * 1000;
+        long lastMicros = lastMonsterTickNanos / 1000;
+        Map<String, Long> metrics = new LinkedHashMap<>();
+        metrics.put("lastTickMicros", lastMicros);
+        metrics.put("maxTickMicros", maxMonsterTickNanos.get() / 1000);
+        metrics.put("budgetMicros", budgetMicros);
+        metrics.put("headroomPercent", (budgetMicros - lastMicros) * 100 / budgetMicros);
+        return metrics;
     }
     
     private void stopHuntTimer() {
         if (huntTimer != null) {
-            huntTimer.cancel();
+            huntTimer.cancel(false);
             huntTimer = null;
         }
         if (monsterTimer != null) {
-            monsterTimer.cancel();
+            monsterTimer.cancel(false);
             monsterTimer = null;
         }
         huntActive = false;
         huntMonsters.clear();
-        nextMonsterId = 1;
     }
     
     // === MAZE Timer Methods (đồng bộ thời gian giữa các người chơi) ===
@@ -949,28 +1194,27 @@ public class WebSocketGameServer extends WebSocketServer {
         mazeActive = true;
         mazeTimeRemaining = 120; // 2 phút
         
-        mazeTimer = new java.util.Timer();
-        mazeTimer.scheduleAtFixedRate(new java.util.TimerTask() {
+        mazeTimer = mazeLoop.scheduleTick(new Runnable() {
             @Override
             public void run() {
                 if (mazeTimeRemaining > 0) {
                     mazeTimeRemaining--;
                     // Broadcast time to all players in "maze" map
-                    broadcastToMap("maze", "MazeTime," + mazeTimeRemaining);
+                    broadcastToMap("maze", protocol.mazeTimePacket(mazeTimeRemaining));
                 } else {
                     // Time's up - broadcast và dừng timer
                     broadcastToMap("maze", "MazeTimeUp");
                     stopMazeTimer();
                 }
             }
-        }, 1000, 1000);
+        }, 1000);
         
         System.out.println("Maze timer started: 120 seconds");
     }
     
     private void stopMazeTimer() {
         if (mazeTimer != null) {
-            mazeTimer.cancel();
+            mazeTimer.cancel(false);
             mazeTimer = null;
         }
         mazeActive = false;
@@ -978,11 +1222,7 @@ public class WebSocketGameServer extends WebSocketServer {
     }
     
     private void broadcastToMap(String mapName, String message) {
-        for (ClientInfo player : playerOnline) {
-            if (player != null && player.getMap().equals(mapName)) {
-                sendToClient(player.getWebSocket(), message);
-            }
-        }
+        fanOut(message, rooms.connections(mapName));
     }
     
     /**
@@ -998,18 +1238,19 @@ public class WebSocketGameServer extends WebSocketServer {
             int damage = Integer.parseInt(parts[2]);
             String shooter = parts[3];
             
-            MonsterData monster = huntMonsters.get(monsterId);
-            if (monster == null || !monster.alive) return;
+            int slot = huntMonsters.slotOf(monsterId);
+            if (slot < 0) return;
             
-            // Apply damage and check for death
-            int goldReward = monster.takeDamage(damage);
+            // Apply damage and check for death, a dead monster leaves tracking here
+            int goldReward = huntMonsters.damage(slot, damage);
             
             // Broadcast health update to all clients
-            broadcastToMap("hunt", "MonsterUpdate," + monster.id + "," + monster.x + "," + monster.y + "," + monster.health);
+            broadcastToMap("hunt", protocol.monsterUpdatePacket(monsterId, huntMonsters.x(slot),
+                    huntMonsters.y(slot), huntMonsters.health(slot)));
+            huntMonsters.clearDirty(slot);
             
             if (goldReward > 0) {
-                // Monster died - remove from tracking and broadcast death
-                huntMonsters.remove(monsterId);
+                // Monster died - broadcast death
                 broadcastToMap("hunt", "MonsterDead," + monsterId + "," + shooter + "," + goldReward);
                 
                 // Update shooter's score on server
@@ -1064,17 +1305,25 @@ public class WebSocketGameServer extends WebSocketServer {
         if (player == null) return;
         
         String username = player.getUsername();
-        String mySkin = shopDAO.getEquippedSkin(username);
+        List<ClientInfo> others = new ArrayList<>();
+        for (ClientInfo other : rooms.members(map)) {
+            if (!other.getUsername().equals(username)) {
+                others.add(other);
+            }
+        }
         
         // 1. Send this player's skin to everyone else in the new map
-        for (ClientInfo other : playerOnline) {
-            if (other != null && !other.getUsername().equals(username) && other.getMap().equals(map)) {
-                sendToClient(other.getWebSocket(), "ChangeSkin," + username + "," + mySkin);
-                
-                // 2. Send valid skins of other players in the map to this player
-                String otherSkin = shopDAO.getEquippedSkin(other.getUsername());
-                sendToClient(player.getWebSocket(), "ChangeSkin," + other.getUsername() + "," + otherSkin);
+        shopDAO.getEquippedSkinAsync(username).thenAccept(mySkin -> {
+            for (ClientInfo other : others) {
+                sendToClient(other.getWebSocket(), protocol.changeSkinPacket(username, mySkin));
             }
+        }).exceptionally(WebSocketGameServer::logFailure);
+        
+        // 2. Send valid skins of other players in the map to this player
+        for (ClientInfo other : others) {
+            shopDAO.getEquippedSkinAsync(other.getUsername())
+                    .thenAccept(otherSkin -> sendToClient(player.getWebSocket(), protocol.changeSkinPacket(other.getUsername(), otherSkin)))
+                    .exceptionally(WebSocketGameServer::logFailure);
         }
     }
 }
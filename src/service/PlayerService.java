@@ -2,17 +2,27 @@ package service;
 
 import dao.PlayerDAOImp;
 import dao.LeaderBoardDAO;
+import dao.WriteBehindQueue;
+import databaseConnect.DatabaseExecutor;
 
+import java.sql.SQLException;
+import java.util.concurrent.CompletableFuture;
 import java.util.regex.Matcher;
 import java.util.regex.Pattern;
 
 public class PlayerService implements Service {
+    // Longest username the game tables hold, game_history and player_stats use VARCHAR(50)
+    public static final int MAX_USERNAME_LENGTH = 50;
+
     private PlayerDAOImp playerDAOImp;
     private LeaderBoardDAO leaderBoardDAO;
+    private RankedLeaderboard leaderboard;
 
     public PlayerService() {
         this.playerDAOImp = new PlayerDAOImp();
         this.leaderBoardDAO = new LeaderBoardDAO();
+        this.leaderboard = new RankedLeaderboard(20);
+        this.leaderboard.load(leaderBoardDAO.getAllPoints());
     }
 
     /**
@@ -38,6 +48,7 @@ public class PlayerService implements Service {
         String status;
         if (msg.equals("User registered successfully")) {
             status = "Success|";
+            leaderboard.set(username, 0);
         } else {
             status = "Failed|";
         }
@@ -63,24 +74,84 @@ public class PlayerService implements Service {
     }
 
     /**
-     * Gets the top 20 players from the database.
+     * Gets the top 20 players from the in-memory leaderboard.
      *
      * @return a string containing the top 20 players
      */
     public String leaderBoard() {
-        System.out.println("Getting top 20");
-        return leaderBoardDAO.getTop20();
+        return leaderboard.top().getBody();
     }
 
     /**
-     * Updates the points of a player in the database.
+     * Gets the current points of a player from the in-memory leaderboard.
+     *
+     * @param username the username of the player
+     * @return the points, or 0 if unknown
+     */
+    public int pointsOf(String username) {
+        return leaderboard.pointsOf(username);
+    }
+
+    /**
+     * Gets the current top 20 with its version, so callers can cache the encoded frame.
+     *
+     * @return the top 20 of the current version
+     */
+    public RankedLeaderboard.Snapshot leaderBoardSnapshot() {
+        return leaderboard.top();
+    }
+
+    /**
+     * Updates the points of a player in the leaderboard right away,
+     * the database write is queued for the next write-behind flush.
      *
      * @param username the username of the player
      * @param points   the new points of the player
      * @return a message indicating the result of the update
      */
     public String updatePoint(String username, int points) {
-        return playerDAOImp.updatePoint(username, points);
+        // The startup load may have failed, so a name missing from the leaderboard is looked up once
+        if (!leaderboard.contains(username)) {
+            try {
+                Integer stored = leaderBoardDAO.getPoints(username);
+                if (stored == null) {
+                    return "error update point";
+                }
+                leaderboard.setIfAbsent(username, stored);
+            } catch (SQLException e) {
+                // Database unreachable: still queue the write, the player is ranked on a later update
+                e.printStackTrace();
+                WriteBehindQueue.get().addPoints(username, points);
+                return "point updated!";
+            }
+        }
+        leaderboard.add(username, points);
+        WriteBehindQueue.get().addPoints(username, points);
+        return "point updated!";
+    }
+
+    // ============== Async variants (run on the DatabaseExecutor) ==============
+
+    /**
+     * Registers a player without blocking the caller; hashing and the insert run on the DatabaseExecutor.
+     */
+    public CompletableFuture<String> registerAsync(String username, String password, String email) {
+        return DatabaseExecutor.supply(() -> register(username, password, email));
+    }
+
+    /**
+     * Logs in a player without blocking the caller; the lookup and password check run on the DatabaseExecutor.
+     */
+    public CompletableFuture<String> loginAsync(String username, String password) {
+        return DatabaseExecutor.supply(() -> login(username, password));
+    }
+
+    /**
+     * Updates the points of a player without blocking the caller.
+     */
+    public CompletableFuture<String> updatePointAsync(String username, int points) {
+        // Only queues the change, so it completes immediately
+        return CompletableFuture.completedFuture(updatePoint(username, points));
     }
 
     private boolean isValidEmail(String email) {
@@ -92,6 +163,7 @@ public class PlayerService implements Service {
     }
 
     private boolean isValidUsername(String username) {
+        if (username.length() > MAX_USERNAME_LENGTH) return false;
         String usernameRegex = "^[a-zA-Z0-9]*$";
         Pattern pattern = Pattern.compile(usernameRegex);
         Matcher matcher = pattern.matcher(username);
@@ -0,0 +1,228 @@
+package service;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentSkipListSet;
+import java.util.function.Function;
+
+/**
+ * In-memory ranking of every player by points.
+ * Loaded once from the users table, then kept up to date in place on each point change,
+ * so reading the top players never touches the database.
+ * Players are kept in a skip list ordered by points descending, then username.
+ * Each change bumps a version; the top list is rebuilt at most once per version.
+ * Usernames are matched case-insensitively, like the users table's ci collation,
+ * and the name loaded from the database is the one shown.
+ */
+public class RankedLeaderboard {
+
+    /**
+     * One player's position in the ranking
+     */
+    public static final class Entry implements Comparable<Entry> {
+        private final String username;
+        private final int points;
+
+        Entry(String username, int points) {
+            this.username = username;
+            this.points = points;
+        }
+
+        public String getUsername() {
+            return username;
+        }
+
+        public int getPoints() {
+            return points;
+        }
+
+        @Override
+        public int compareTo(Entry other) {
+            int byPoints = Integer.compare(other.points, points);
+            return byPoints != 0 ? byPoints : username.compareTo(other.username);
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (!(o instanceof Entry)) return false;
+            Entry other = (Entry) o;
+            return points == other.points && username.equals(other.username);
+        }
+
+        @Override
+        public int hashCode() {
+            return 31 * username.hashCode() + points;
+        }
+    }
+
+    /**
+     * Immutable top list of one version of the ranking
+     */
+    public static final class Snapshot {
+        private final long version;
+        private final List<Entry> top;
+        private final String body;
+        private volatile String frame;
+
+        Snapshot(long version, List<Entry> top) {
+            this.version = version;
+            this.top = Collections.unmodifiableList(top);
+            StringBuilder sb = new StringBuilder();
+            for (Entry entry : top) {
+                sb.append(',').append(entry.username).append(' ').append(entry.points);
+            }
+            this.body = sb.toString();
+        }
+
+        public long getVersion() {
+            return version;
+        }
+
+        public List<Entry> getTop() {
+            return top;
+        }
+
+        /**
+         * @return the top list as ",name points,name points..."
+         */
+        public String getBody() {
+            return body;
+        }
+
+        /**
+         * Get the network frame for this version, encoding it on first use only
+         * @param encoder turns the body into the packet sent to clients
+         */
+        public String frame(Function<String, String> encoder) {
+            String f = frame;
+            if (f == null) {
+                f = encoder.apply(body);
+                frame = f;
+            }
+            return f;
+        }
+    }
+
+    private final int size;
+    private final Map<String, Entry> byUsername = new ConcurrentHashMap<>();
+    private final ConcurrentSkipListSet<Entry> ranking = new ConcurrentSkipListSet<>();
+    private volatile long version = 0;
+    private volatile Snapshot snapshot;
+
+    /**
+     * @param size number of players in the top list
+     */
+    public RankedLeaderboard(int size) {
+        this.size = size;
+        this.snapshot = new Snapshot(0, new ArrayList<>());
+    }
+
+    /**
+     * Replace the ranking with points loaded from the database
+     * @param points points by username
+     */
+    public synchronized void load(Map<String, Integer> points) {
+        byUsername.clear();
+        ranking.clear();
+        for (Map.Entry<String, Integer> e : points.entrySet()) {
+            Entry entry = new Entry(e.getKey(), e.getValue());
+            byUsername.put(key(entry.username), entry);
+            ranking.add(entry);
+        }
+        version++;
+    }
+
+    /**
+     * Add points to a player, adding the player if unknown
+     * @param username the player
+     * @param delta points to add, may be negative
+     * @return the new points of the player
+     */
+    public synchronized int add(String username, int delta) {
+        Entry old = byUsername.get(key(username));
+        int points = (old != null ? old.points : 0) + delta;
+        put(old, new Entry(old != null ? old.username : username, points));
+        return points;
+    }
+
+    /**
+     * Set the points of a player, adding the player if unknown
+     */
+    public synchronized void set(String username, int points) {
+        Entry old = byUsername.get(key(username));
+        if (old != null && old.points == points) return;
+        put(old, new Entry(old != null ? old.username : username, points));
+    }
+
+    /**
+     * Add a player with these points, unless the player is already ranked
+     */
+    public synchronized void setIfAbsent(String username, int points) {
+        if (byUsername.containsKey(key(username))) return;
+        put(null, new Entry(username, points));
+    }
+
+    /**
+     * @return true if the player is ranked
+     */
+    public boolean contains(String username) {
+        return byUsername.containsKey(key(username));
+    }
+
+    /**
+     * @return the points of a player, or 0 if unknown
+     */
+    public int pointsOf(String username) {
+        Entry entry = byUsername.get(key(username));
+        return entry != null ? entry.points : 0;
+    }
+
+    /**
+     * @return the current version, bumped on every change
+     */
+    public long version() {
+        return version;
+    }
+
+    /**
+     * Get the top list of the current version
+     */
+    public Snapshot top() {
+        Snapshot s = snapshot;
+        if (s.version == version) {
+            return s;
+        }
+        return rebuild();
+    }
+
+    private synchronized Snapshot rebuild() {
+        // Built under the writers' lock so the list never mixes two versions
+        if (snapshot.version == version) {
+            return snapshot;
+        }
+        List<Entry> top = new ArrayList<>(size);
+        for (Entry entry : ranking) {
+            if (top.size() == size) break;
+            top.add(entry);
+        }
+        snapshot = new Snapshot(version, top);
+        return snapshot;
+    }
+
+    private static String key(String username) {
+        return username.toLowerCase(Locale.ROOT);
+    }
+
+    private void put(Entry old, Entry entry) {
+        if (old != null) {
+            ranking.remove(old);
+        }
+        byUsername.put(key(entry.username), entry);
+        ranking.add(entry);
+        version++;
+    }
+}
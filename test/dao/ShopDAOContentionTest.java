@@ -0,0 +1,175 @@
+package dao;
+
+import databaseConnect.DatabaseConnection;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.junit.jupiter.api.Assertions.fail;
+import static org.junit.jupiter.api.Assumptions.assumeTrue;
+
+/**
+ * Many buyers racing on one account through {@link ShopDAO#buySkin}.
+ * Needs the MySQL database of {@link DatabaseConnection}; skipped when it is unreachable.
+ */
+public class ShopDAOContentionTest {
+
+    private static final String USERNAME = "contentiontest";
+    private static final int BUYERS = 16;
+
+    private static boolean databaseUp;
+
+    private final ShopDAO shopDAO = new ShopDAO();
+
+    @BeforeAll
+    static void migrate() {
+        databaseUp = new SchemaMigrator().migrate();
+    }
+
+    @BeforeEach
+    void createUser() throws SQLException {
+        assumeTrue(databaseUp, "database not reachable");
+        deleteUser();
+        try (Connection conn = DatabaseConnection.getConnection();
+             PreparedStatement stmt = conn.prepareStatement(
+                     "INSERT INTO users (username, email, password_hash, coins, points) VALUES (?, ?, ?, 0, 0)")) {
+            stmt.setString(1, USERNAME);
+            stmt.setString(2, USERNAME + "@test.local");
+            stmt.setString(3, "x");
+            stmt.executeUpdate();
+        }
+    }
+
+    @AfterEach
+    void deleteUser() throws SQLException {
+        if (!databaseUp) return;
+        try (Connection conn = DatabaseConnection.getConnection()) {
+            for (String query : new String[] {
+                    "DELETE FROM player_skins WHERE username = ?",
+                    "DELETE FROM users WHERE username = ?"}) {
+                try (PreparedStatement stmt = conn.prepareStatement(query)) {
+                    stmt.setString(1, USERNAME);
+                    stmt.executeUpdate();
+                }
+            }
+        }
+    }
+
+    @Test
+    void sameSkinIsBoughtOnce() throws Exception {
+        ShopDAO.SkinItem skin = skinInFolder("2");
+        setCoins(skin.price * BUYERS);
+
+        List<ShopDAO.PurchaseResult> results = buyConcurrently(skin.id, skin.id);
+
+        int bought = 0;
+        for (ShopDAO.PurchaseResult result : results) {
+            if (result.success) bought++;
+        }
+        assertEquals(1, bought, "successful purchases");
+        assertEquals(1, ownedCount(skin.id), "owned copies");
+        assertEquals(skin.price * (BUYERS - 1), storedCoins(), "coins left");
+    }
+
+    @Test
+    void balanceIsNeverOverdrawn() throws Exception {
+        ShopDAO.SkinItem cheap = skinInFolder("2");
+        ShopDAO.SkinItem dear = skinInFolder("3");
+        // Enough for either skin, not for both
+        int start = Math.max(cheap.price, dear.price) + Math.min(cheap.price, dear.price) - 1;
+        setCoins(start);
+
+        List<ShopDAO.PurchaseResult> results = buyConcurrently(cheap.id, dear.id);
+
+        int spent = 0;
+        for (ShopDAO.PurchaseResult result : results) {
+            if (result.success) spent += result.price;
+        }
+        int left = storedCoins();
+        assertTrue(left >= 0, "balance went negative: " + left);
+        assertEquals(start - spent, left, "coins left");
+        assertTrue(ownedCount(cheap.id) <= 1 && ownedCount(dear.id) <= 1, "a skin was bought twice");
+        assertTrue(ownedCount(cheap.id) + ownedCount(dear.id) == 1, "exactly one skin fits the balance");
+    }
+
+    /**
+     * Release all buyers at once, half of them on each skin
+     */
+    private List<ShopDAO.PurchaseResult> buyConcurrently(int firstSkin, int secondSkin) throws Exception {
+        ExecutorService pool = Executors.newFixedThreadPool(BUYERS);
+        CountDownLatch start = new CountDownLatch(1);
+        try {
+            List<Future<ShopDAO.PurchaseResult>> futures = new ArrayList<>();
+            for (int i = 0; i < BUYERS; i++) {
+                int skinId = i % 2 == 0 ? firstSkin : secondSkin;
+                futures.add(pool.submit(() -> {
+                    start.await();
+                    return shopDAO.buySkin(USERNAME, skinId);
+                }));
+            }
+            start.countDown();
+
+            List<ShopDAO.PurchaseResult> results = new ArrayList<>();
+            for (Future<ShopDAO.PurchaseResult> future : futures) {
+                results.add(future.get());
+            }
+            return results;
+        } finally {
+            pool.shutdownNow();
+        }
+    }
+
+    private ShopDAO.SkinItem skinInFolder(String folder) {
+        for (ShopDAO.SkinItem skin : shopDAO.getSkinCatalog().getSkins()) {
+            if (skin.skinFolder.equals(folder)) return skin;
+        }
+        return fail("no active skin in folder " + folder);
+    }
+
+    private void setCoins(int coins) throws SQLException {
+        try (Connection conn = DatabaseConnection.getConnection();
+             PreparedStatement stmt = conn.prepareStatement("UPDATE users SET coins = ? WHERE username = ?")) {
+            stmt.setInt(1, coins);
+            stmt.setString(2, USERNAME);
+            stmt.executeUpdate();
+        }
+    }
+
+    private int storedCoins() throws SQLException {
+        try (Connection conn = DatabaseConnection.getConnection();
+             PreparedStatement stmt = conn.prepareStatement("SELECT coins FROM users WHERE username = ?")) {
+            stmt.setString(1, USERNAME);
+            try (ResultSet rs = stmt.executeQuery()) {
+                rs.next();
+                return rs.getInt(1);
+            }
+        }
+    }
+
+    private int ownedCount(int skinId) throws SQLException {
+        try (Connection conn = DatabaseConnection.getConnection();
+             PreparedStatement stmt = conn.prepareStatement(
+                     "SELECT COUNT(*) FROM player_skins WHERE username = ? AND skin_id = ?")) {
+            stmt.setString(1, USERNAME);
+            stmt.setInt(2, skinId);
+            try (ResultSet rs = stmt.executeQuery()) {
+                rs.next();
+                return rs.getInt(1);
+            }
+        }
+    }
+}